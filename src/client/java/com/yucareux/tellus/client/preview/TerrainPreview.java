@@ -216,19 +216,18 @@ public final class TerrainPreview implements AutoCloseable {
 
 		int coverStride = COVER_SAMPLE_STRIDE;
 		int coverSize = (size + coverStride - 1) / coverStride;
-		int[] coverClasses = new int[coverSize * coverSize];
-		for (int z = 0; z < coverSize; z++) {
-			if (Thread.currentThread().isInterrupted()) {
-				return null;
-			}
-			int sampleZ = Math.min(size - 1, z * coverStride);
-			double blockZ = centerZ - radius + sampleZ * step;
-			for (int x = 0; x < coverSize; x++) {
-				int sampleX = Math.min(size - 1, x * coverStride);
-				double blockX = centerX - radius + sampleX * step;
-				int idx = x + z * coverSize;
-				coverClasses[idx] = this.landCoverSource.sampleCoverClass(blockX, blockZ, worldScale);
-			}
+		byte[] coverClasses = new byte[coverSize * coverSize];
+		this.landCoverSource.sampleCoverGrid(
+				centerX - radius,
+				centerZ - radius,
+				coverSize,
+				coverSize,
+				coverStride * step,
+				worldScale,
+				coverClasses
+		);
+		if (Thread.currentThread().isInterrupted()) {
+			return null;
 		}
 
 		int climateStride = CLIMATE_SAMPLE_STRIDE;
@@ -263,7 +262,7 @@ public final class TerrainPreview implements AutoCloseable {
 				int climateX = Math.min(climateSize - 1, x / climateStride);
 				int coverIdx = coverX + coverZ * coverSize;
 				int climateIdx = climateX + climateZ * climateSize;
-				int coverClass = coverClasses[coverIdx];
+				int coverClass = Byte.toUnsignedInt(coverClasses[coverIdx]);
 				byte climateGroup = climateGroups[climateIdx];
 				double slope = computeSlope(blockHeights, size, idx, step);
 				colors[idx] = colorForPreview(
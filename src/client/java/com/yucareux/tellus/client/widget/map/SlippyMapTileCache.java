@@ -6,11 +6,11 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mojang.blaze3d.platform.NativeImage;
+import com.yucareux.tellus.world.data.cache.TileArchive;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
@@ -23,6 +23,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import net.minecraft.client.Minecraft;
 import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
 
 public class SlippyMapTileCache {
 	private static final int CACHE_SIZE = 1024;
@@ -34,10 +35,12 @@ public class SlippyMapTileCache {
 
 	private final Queue<InputStream> loadingStreams = new LinkedBlockingQueue<>();
 	private final Path cacheRoot;
+	private final @Nullable TileArchive archive;
 	private final LoadingCache<SlippyMapTilePos, SlippyMapTile> tileCache;
 
 	public SlippyMapTileCache() {
 		this.cacheRoot = Minecraft.getInstance().gameDirectory.toPath().resolve("tellus/cache/map");
+		this.archive = openArchive(this.cacheRoot);
 		this.tileCache = CacheBuilder.newBuilder()
 				.maximumSize(CACHE_SIZE)
 				.removalListener(notification -> {
@@ -97,9 +100,9 @@ public class SlippyMapTileCache {
 	}
 
 	private @NonNull InputStream getStream(SlippyMapTilePos pos) throws IOException {
-		Path cachePath = this.cacheRoot.resolve(pos.getCacheName());
-		if (Files.exists(cachePath)) {
-			return new BufferedInputStream(Files.newInputStream(cachePath));
+		byte[] cached = this.readCached(pos);
+		if (cached != null) {
+			return new ByteArrayInputStream(cached);
 		}
 
 		URI uri = URI.create(
@@ -113,26 +116,66 @@ public class SlippyMapTileCache {
 		this.loadingStreams.add(stream);
 		try (InputStream input = new BufferedInputStream(stream)) {
 			byte[] data = input.readAllBytes();
-			this.cacheData(cachePath, data);
+			this.cacheData(pos, data);
 			this.loadingStreams.remove(stream);
 			return new ByteArrayInputStream(data);
 		}
 	}
 
-	private void cacheData(Path cachePath, byte[] data) {
+	private byte @Nullable [] readCached(SlippyMapTilePos pos) {
+		if (this.archive != null) {
+			try {
+				byte[] data = this.archive.readBytes(pos.getZoom(), pos.getX(), pos.getY());
+				if (data != null) {
+					return data;
+				}
+			} catch (IOException e) {
+				Tellus.LOGGER.warn("Failed to read cached map tile {}", pos, e);
+			}
+		}
+
+		Path legacyPath = this.cacheRoot.resolve(pos.getCacheName());
+		if (!Files.exists(legacyPath)) {
+			return null;
+		}
+		byte[] data;
 		try {
-			Files.createDirectories(this.cacheRoot);
+			data = Files.readAllBytes(legacyPath);
 		} catch (IOException e) {
-			Tellus.LOGGER.error("Failed to create cache root", e);
+			Tellus.LOGGER.warn("Failed to read cached map tile {}", legacyPath, e);
+			return null;
 		}
+		if (this.archive != null) {
+			try {
+				this.archive.write(pos.getZoom(), pos.getX(), pos.getY(), data);
+				Files.deleteIfExists(legacyPath);
+			} catch (IOException e) {
+				Tellus.LOGGER.warn("Failed to migrate cached map tile {}", legacyPath, e);
+			}
+		}
+		return data;
+	}
 
-		try (OutputStream output = Files.newOutputStream(cachePath)) {
-			output.write(data);
+	private void cacheData(SlippyMapTilePos pos, byte[] data) {
+		if (this.archive == null) {
+			return;
+		}
+		try {
+			this.archive.write(pos.getZoom(), pos.getX(), pos.getY(), data);
 		} catch (IOException e) {
 			Tellus.LOGGER.error("Failed to cache map tile", e);
 		}
 	}
 
+	private static @Nullable TileArchive openArchive(Path cacheRoot) {
+		try {
+			return TileArchive.open(cacheRoot);
+		} catch (IOException e) {
+			Tellus.LOGGER.error("Failed to create cache root", e);
+			return null;
+		}
+	}
+
 	private NativeImage createErrorImage() {
 		NativeImage result = new NativeImage(SlippyMap.TILE_SIZE, SlippyMap.TILE_SIZE, false);
 		for (int x = 0; x < SlippyMap.TILE_SIZE; x++) {
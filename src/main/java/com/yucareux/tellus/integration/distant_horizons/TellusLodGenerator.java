@@ -164,12 +164,22 @@ public final class TellusLodGenerator implements IDhApiWorldGenerator {
 		BlockState lastFillerState = null;
 		SurfaceWrapperPair lastSurfaceWrapper = null;
 		boolean hasWaterInTile = false;
+		final int coverGridSize = (lodSizePoints + coverStride - 1) / coverStride;
+		final byte[] coverGrid = new byte[coverGridSize * coverGridSize];
+		generator.sampleCoverGrid(
+				worldXs[0],
+				worldZs[0],
+				coverGridSize,
+				coverGridSize,
+				coverStride * cellSize,
+				coverGrid
+		);
 
 		for (int baseLocalZ = 0; baseLocalZ < lodSizePoints; baseLocalZ += coverStride) {
 			for (int baseLocalX = 0; baseLocalX < lodSizePoints; baseLocalX += coverStride) {
-				final int sampleWorldX = worldXs[baseLocalX];
-				final int sampleWorldZ = worldZs[baseLocalZ];
-				final int coverClass = generator.sampleCoverClass(sampleWorldX, sampleWorldZ);
+				final int coverClass = Byte.toUnsignedInt(
+						coverGrid[(baseLocalZ / coverStride) * coverGridSize + baseLocalX / coverStride]
+				);
 				for (int dz = 0; dz < coverStride; dz++) {
 					final int localZ = baseLocalZ + dz;
 					if (localZ >= lodSizePoints) {
@@ -184,7 +194,7 @@ public final class TellusLodGenerator implements IDhApiWorldGenerator {
 						final int worldX = worldXs[localX];
 						final int index = localZ * lodSizePoints + localX;
 						final WaterSurfaceResolver.WaterColumnData fastColumn =
-								generator.resolveLodWaterColumn(worldX, worldZ, coverClass);
+								generator.resolveLodWaterColumn(worldX, worldZ, coverClass, cellSize);
 						final int surfaceY = Mth.clamp(fastColumn.terrainSurface(), minY, maxY - 1);
 						final int waterSurface = Mth.clamp(fastColumn.waterSurface(), minY, maxY - 1);
 						final boolean underwater = fastColumn.hasWater() && waterSurface > surfaceY;
@@ -199,7 +209,7 @@ public final class TellusLodGenerator implements IDhApiWorldGenerator {
 						waterSurfaces[index] = waterSurface;
 						underwaterFlags[index] = underwater;
 						coverClasses[index] = coverClass;
-						Holder<Biome> biomeHolder = biomeSource.getBiomeAtBlock(worldX, worldZ);
+						Holder<Biome> biomeHolder = biomeSource.getBiomeAtBlock(worldX, worldZ, coverClass);
 						biomeHolders[index] = biomeHolder;
 						biomeWrappers[index] = wrappers.getBiome(biomeHolder);
 					}
@@ -333,10 +343,9 @@ public final class TellusLodGenerator implements IDhApiWorldGenerator {
 				if (!underwater && snowActive && TellusRealtimeState.shouldApplySnow(worldX, worldZ)) {
 					topBlock = wrappers.getBlockState(Blocks.SNOW_BLOCK.defaultBlockState());
 				}
-				final int slopeDiff = lodSlopeDiff(surfaceYs, lodSizePoints, localX, localZ, cellSize);
 				final boolean useBadlandsBands = !underwater
-						&& slopeDiff >= BADLANDS_LOD_SLOPE_DIFF
-						&& biomeHolder.is(BiomeTags.IS_BADLANDS);
+						&& biomeHolder.is(BiomeTags.IS_BADLANDS)
+						&& lodSlopeDiff(surfaceYs, lodSizePoints, localX, localZ, cellSize) >= BADLANDS_LOD_SLOPE_DIFF;
 
 				int lastLayerTop = 0;
 				final int surfaceTop = toLayerTop(surfaceY, minY, absoluteTop);
@@ -508,6 +517,7 @@ public final class TellusLodGenerator implements IDhApiWorldGenerator {
 				prefetchAtBlock(worldX, worldZ);
 			}
 		}
+		generator.prefetchLodCoverTiles(minBlockX, minBlockZ, maxBlockX, maxBlockZ);
 		if (useDetailedWater
 				&& hasWaterNearLodArea(baseX, baseZ, lodSizePoints, cellSize, cellOffset, blendCells, true)) {
 			generator.prefetchLodWaterRegions(minBlockX, minBlockZ, maxBlockX, maxBlockZ);
@@ -523,25 +533,46 @@ public final class TellusLodGenerator implements IDhApiWorldGenerator {
 			final int blendCells,
 			final boolean includeInterior
 	) {
-		final int min = -blendCells;
-		final int max = lodSizePoints - 1 + blendCells;
-		int worldZ = baseZ + min * cellSize + cellOffset;
-		for (int localZ = min; localZ <= max; localZ++, worldZ += cellSize) {
-			final boolean zInside = localZ >= 0 && localZ < lodSizePoints;
-			int worldX = baseX + min * cellSize + cellOffset;
-			for (int localX = min; localX <= max; localX++, worldX += cellSize) {
-				final boolean xInside = localX >= 0 && localX < lodSizePoints;
-				if (!includeInterior && xInside && zInside) {
-					continue;
-				}
-				final int coverClass = generator.sampleCoverClass(worldX, worldZ);
+		final int span = lodSizePoints + 2 * blendCells;
+		final int outerX = baseX - blendCells * cellSize + cellOffset;
+		final int outerZ = baseZ - blendCells * cellSize + cellOffset;
+		if (includeInterior) {
+			return hasWaterInCoverGrid(outerX, outerZ, span, span, cellSize);
+		}
+		if (blendCells <= 0) {
+			return false;
+		}
+		final int innerX = baseX + cellOffset;
+		final int innerZ = baseZ + cellOffset;
+		final int farX = baseX + lodSizePoints * cellSize + cellOffset;
+		final int farZ = baseZ + lodSizePoints * cellSize + cellOffset;
+		return hasWaterInCoverGrid(outerX, outerZ, span, blendCells, cellSize)
+				|| hasWaterInCoverGrid(outerX, farZ, span, blendCells, cellSize)
+				|| hasWaterInCoverGrid(outerX, innerZ, blendCells, lodSizePoints, cellSize)
+				|| hasWaterInCoverGrid(farX, innerZ, blendCells, lodSizePoints, cellSize);
+	}
+
+	private boolean hasWaterInCoverGrid(
+			final int minX,
+			final int minZ,
+			final int width,
+			final int height,
+			final int cellSize
+	) {
+		final byte[] coverGrid = new byte[width * height];
+		generator.sampleCoverGrid(minX, minZ, width, height, cellSize, coverGrid);
+		for (int row = 0; row < height; row++) {
+			final int worldZ = minZ + row * cellSize;
+			for (int column = 0; column < width; column++) {
+				final int coverClass = Byte.toUnsignedInt(coverGrid[row * width + column]);
 				if (coverClass == ESA_WATER || coverClass == ESA_MANGROVES) {
 					return true;
 				}
 				if (coverClass == ESA_NO_DATA) {
-					final WaterSurfaceResolver.WaterColumnData column =
+					final int worldX = minX + column * cellSize;
+					final WaterSurfaceResolver.WaterColumnData waterColumn =
 							generator.resolveLodWaterColumn(worldX, worldZ, coverClass);
-					if (column.hasWater()) {
+					if (waterColumn.hasWater()) {
 						return true;
 					}
 				}
@@ -0,0 +1,500 @@
+package com.yucareux.tellus.world.data.cache;
+
+import com.yucareux.tellus.Tellus;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import org.jspecify.annotations.Nullable;
+
+public final class TileArchive {
+	private static final long FILE_MAGIC = 0x54454C4C55534152L;
+	private static final int FILE_VERSION = 1;
+	private static final int FILE_HEADER_SIZE = 12;
+	private static final int RECORD_MAGIC = 0x54494C45;
+	private static final int RECORD_HEADER_SIZE = 20;
+	private static final int TOMBSTONE = -1;
+	private static final long COMPACT_MIN_DEAD_BYTES = 32L << 20;
+	private static final long MAX_MAPPED_BYTES = Integer.MAX_VALUE;
+	private static final String FILE_PREFIX = "archive-";
+	private static final String FILE_SUFFIX = ".tiles";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final ConcurrentMap<Path, TileArchive> OPEN_ARCHIVES = new ConcurrentHashMap<>();
+	private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "tellus-archive-compact");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+
+	private final Path directory;
+	private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+	private final Object appendLock = new Object();
+	private final AtomicBoolean compacting = new AtomicBoolean();
+	private volatile Generation generation;
+
+	private TileArchive(Path directory, Generation generation) {
+		this.directory = directory;
+		this.generation = generation;
+	}
+
+	public static TileArchive open(Path directory) throws IOException {
+		Path key = directory.toAbsolutePath().normalize();
+		try {
+			return OPEN_ARCHIVES.computeIfAbsent(key, path -> {
+				try {
+					return new TileArchive(path, openGeneration(path));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	public boolean contains(int zoom, int x, int y) {
+		return this.generation.index.containsKey(TileId.zxyToTileId(zoom, x, y));
+	}
+
+	public @Nullable ByteBuffer read(int zoom, int x, int y) throws IOException {
+		long tileId = TileId.zxyToTileId(zoom, x, y);
+		Entry entry;
+		ByteBuffer payload;
+		this.swapLock.readLock().lock();
+		try {
+			Generation current = this.generation;
+			entry = current.index.get(tileId);
+			if (entry == null) {
+				return null;
+			}
+			payload = slice(current, entry);
+		} finally {
+			this.swapLock.readLock().unlock();
+		}
+		if (checksum(payload) != entry.checksum) {
+			Tellus.LOGGER.warn("Dropping corrupt tile {}/{}/{} from {}", zoom, x, y, this.directory);
+			deleteIfCurrent(tileId, entry);
+			return null;
+		}
+		return payload;
+	}
+
+	public byte @Nullable [] readBytes(int zoom, int x, int y) throws IOException {
+		ByteBuffer payload = read(zoom, x, y);
+		if (payload == null) {
+			return null;
+		}
+		byte[] bytes = new byte[payload.remaining()];
+		payload.get(bytes);
+		return bytes;
+	}
+
+	public void write(int zoom, int x, int y, byte[] data) throws IOException {
+		write(zoom, x, y, ByteBuffer.wrap(data));
+	}
+
+	public void write(int zoom, int x, int y, ByteBuffer data) throws IOException {
+		long tileId = TileId.zxyToTileId(zoom, x, y);
+		ByteBuffer payload = data.slice();
+		int checksum = checksum(payload);
+		this.swapLock.readLock().lock();
+		try {
+			synchronized (this.appendLock) {
+				Generation current = this.generation;
+				long offset = append(current, tileId, payload.remaining(), checksum, payload);
+				Entry previous = current.index.put(tileId, new Entry(offset, payload.limit(), checksum));
+				if (previous != null) {
+					current.deadBytes += RECORD_HEADER_SIZE + previous.length;
+				}
+			}
+		} finally {
+			this.swapLock.readLock().unlock();
+		}
+		maybeCompact();
+	}
+
+	public void delete(int zoom, int x, int y) throws IOException {
+		long tileId = TileId.zxyToTileId(zoom, x, y);
+		this.swapLock.readLock().lock();
+		try {
+			synchronized (this.appendLock) {
+				Generation current = this.generation;
+				Entry previous = current.index.remove(tileId);
+				if (previous == null) {
+					return;
+				}
+				append(current, tileId, TOMBSTONE, 0, null);
+				current.deadBytes += RECORD_HEADER_SIZE * 2L + previous.length;
+			}
+		} finally {
+			this.swapLock.readLock().unlock();
+		}
+		maybeCompact();
+	}
+
+	private void deleteIfCurrent(long tileId, Entry expected) throws IOException {
+		this.swapLock.readLock().lock();
+		try {
+			synchronized (this.appendLock) {
+				Generation current = this.generation;
+				if (current.index.get(tileId) != expected || !current.index.remove(tileId, expected)) {
+					return;
+				}
+				append(current, tileId, TOMBSTONE, 0, null);
+				current.deadBytes += RECORD_HEADER_SIZE * 2L + expected.length;
+			}
+		} finally {
+			this.swapLock.readLock().unlock();
+		}
+		maybeCompact();
+	}
+
+	private static ByteBuffer slice(Generation generation, Entry entry) throws IOException {
+		long end = entry.offset + entry.length;
+		MappedByteBuffer mapped = generation.mapped;
+		if (mapped == null || mapped.capacity() < end) {
+			mapped = remap(generation, end);
+		}
+		if (mapped == null) {
+			ByteBuffer payload = ByteBuffer.allocate(entry.length);
+			readFully(generation.channel, payload, entry.offset);
+			return payload.flip();
+		}
+		return mapped.slice((int) entry.offset, entry.length);
+	}
+
+	private static @Nullable MappedByteBuffer remap(Generation generation, long required) throws IOException {
+		synchronized (generation) {
+			MappedByteBuffer mapped = generation.mapped;
+			if (mapped != null && mapped.capacity() >= required) {
+				return mapped;
+			}
+			long size = generation.channel.size();
+			if (size > MAX_MAPPED_BYTES || size < required) {
+				return null;
+			}
+			mapped = generation.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			generation.mapped = mapped;
+			return mapped;
+		}
+	}
+
+	private static long append(
+			Generation generation,
+			long tileId,
+			int length,
+			int checksum,
+			@Nullable ByteBuffer payload
+	) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		header.putInt(RECORD_MAGIC).putLong(tileId).putInt(length).putInt(checksum).flip();
+		long recordOffset = generation.end;
+		writeFully(generation.channel, header, recordOffset);
+		if (payload != null) {
+			writeFully(generation.channel, payload.duplicate(), recordOffset + RECORD_HEADER_SIZE);
+		}
+		generation.end = recordOffset + RECORD_HEADER_SIZE + Math.max(0, length);
+		return recordOffset + RECORD_HEADER_SIZE;
+	}
+
+	private void maybeCompact() {
+		Generation current = this.generation;
+		long dead = current.deadBytes;
+		if (dead < COMPACT_MIN_DEAD_BYTES || dead < current.end / 2) {
+			return;
+		}
+		if (!this.compacting.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			COMPACTOR.execute(() -> {
+				try {
+					compact();
+				} catch (IOException e) {
+					Tellus.LOGGER.warn("Failed to compact tile archive {}", this.directory, e);
+				} finally {
+					this.compacting.set(false);
+				}
+			});
+		} catch (RuntimeException e) {
+			this.compacting.set(false);
+		}
+	}
+
+	private void compact() throws IOException {
+		Generation old;
+		long snapshotEnd;
+		List<Map.Entry<Long, Entry>> live;
+		this.swapLock.readLock().lock();
+		try {
+			synchronized (this.appendLock) {
+				old = this.generation;
+				snapshotEnd = old.end;
+				live = new ArrayList<>(old.index.entrySet());
+			}
+		} finally {
+			this.swapLock.readLock().unlock();
+		}
+
+		Path nextPath = generationPath(this.directory, old.number + 1);
+		Path tempPath = nextPath.resolveSibling(nextPath.getFileName() + TEMP_SUFFIX);
+		Generation next = createGeneration(tempPath, old.number + 1);
+		boolean swapped = false;
+		try {
+			for (Map.Entry<Long, Entry> mapping : live) {
+				Entry entry = mapping.getValue();
+				ByteBuffer payload = ByteBuffer.allocate(entry.length);
+				readFully(old.channel, payload, entry.offset);
+				payload.flip();
+				long offset = append(next, mapping.getKey(), entry.length, entry.checksum, payload);
+				next.index.put(mapping.getKey(), new Entry(offset, entry.length, entry.checksum));
+			}
+			next.channel.force(true);
+
+			this.swapLock.writeLock().lock();
+			try {
+				replay(old, snapshotEnd, old.end, next);
+				next.channel.force(true);
+				Files.move(tempPath, nextPath, StandardCopyOption.ATOMIC_MOVE);
+				next.path = nextPath;
+				this.generation = next;
+				swapped = true;
+			} finally {
+				this.swapLock.writeLock().unlock();
+			}
+		} finally {
+			Generation discarded = swapped ? old : next;
+			discarded.channel.close();
+			try {
+				Files.deleteIfExists(discarded.path);
+			} catch (IOException e) {
+				Tellus.LOGGER.debug("Deferred removal of tile archive generation {}", discarded.path, e);
+			}
+		}
+	}
+
+	private static void replay(Generation source, long from, long to, Generation target) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		long position = from;
+		while (position < to) {
+			header.clear();
+			readFully(source.channel, header, position);
+			header.flip();
+			header.getInt();
+			long tileId = header.getLong();
+			int length = header.getInt();
+			int checksum = header.getInt();
+			if (length == TOMBSTONE) {
+				if (target.index.remove(tileId) != null) {
+					append(target, tileId, TOMBSTONE, 0, null);
+				}
+				position += RECORD_HEADER_SIZE;
+				continue;
+			}
+			ByteBuffer payload = ByteBuffer.allocate(length);
+			readFully(source.channel, payload, position + RECORD_HEADER_SIZE);
+			payload.flip();
+			long offset = append(target, tileId, length, checksum, payload);
+			target.index.put(tileId, new Entry(offset, length, checksum));
+			position += RECORD_HEADER_SIZE + length;
+		}
+	}
+
+	private static Generation openGeneration(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		long latest = -1;
+		List<Path> stale = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX + TEMP_SUFFIX)) {
+			for (Path path : files) {
+				stale.add(path);
+			}
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+			for (Path path : files) {
+				long number = generationNumber(path);
+				if (number < 0) {
+					continue;
+				}
+				if (number > latest) {
+					if (latest >= 0) {
+						stale.add(generationPath(directory, latest));
+					}
+					latest = number;
+				} else {
+					stale.add(path);
+				}
+			}
+		}
+		for (Path path : stale) {
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException e) {
+				Tellus.LOGGER.debug("Failed to remove stale tile archive {}", path, e);
+			}
+		}
+		if (latest < 0) {
+			return createGeneration(generationPath(directory, 0), 0);
+		}
+
+		Path path = generationPath(directory, latest);
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (!hasValidHeader(channel)) {
+				channel.close();
+				Tellus.LOGGER.warn("Resetting unreadable tile archive {}", path);
+				Files.deleteIfExists(path);
+				return createGeneration(generationPath(directory, latest + 1), latest + 1);
+			}
+			Generation generation = new Generation(path, latest, channel);
+			recover(generation);
+			return generation;
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private static Generation createGeneration(Path path, long number) throws IOException {
+		FileChannel channel = FileChannel.open(
+				path,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING
+		);
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		header.putLong(FILE_MAGIC).putInt(FILE_VERSION).flip();
+		try {
+			writeFully(channel, header, 0);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		Generation generation = new Generation(path, number, channel);
+		generation.end = FILE_HEADER_SIZE;
+		return generation;
+	}
+
+	private static boolean hasValidHeader(FileChannel channel) throws IOException {
+		if (channel.size() < FILE_HEADER_SIZE) {
+			return false;
+		}
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		readFully(channel, header, 0);
+		header.flip();
+		return header.getLong() == FILE_MAGIC && header.getInt() == FILE_VERSION;
+	}
+
+	private static void recover(Generation generation) throws IOException {
+		FileChannel channel = generation.channel;
+		long size = channel.size();
+		long position = FILE_HEADER_SIZE;
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		while (position + RECORD_HEADER_SIZE <= size) {
+			header.clear();
+			readFully(channel, header, position);
+			header.flip();
+			int magic = header.getInt();
+			long tileId = header.getLong();
+			int length = header.getInt();
+			int checksum = header.getInt();
+			if (magic != RECORD_MAGIC || length < TOMBSTONE) {
+				break;
+			}
+			if (length == TOMBSTONE) {
+				Entry previous = generation.index.remove(tileId);
+				generation.deadBytes += RECORD_HEADER_SIZE + (previous != null ? RECORD_HEADER_SIZE + previous.length : 0);
+				position += RECORD_HEADER_SIZE;
+				continue;
+			}
+			if (position + RECORD_HEADER_SIZE + length > size) {
+				break;
+			}
+			Entry previous = generation.index.put(tileId, new Entry(position + RECORD_HEADER_SIZE, length, checksum));
+			if (previous != null) {
+				generation.deadBytes += RECORD_HEADER_SIZE + previous.length;
+			}
+			position += RECORD_HEADER_SIZE + length;
+		}
+		if (position < size) {
+			Tellus.LOGGER.warn("Truncating torn tail of tile archive {} at {} of {} bytes", generation.path, position, size);
+			channel.truncate(position);
+		}
+		generation.end = position;
+	}
+
+	private static Path generationPath(Path directory, long number) {
+		return directory.resolve(FILE_PREFIX + number + FILE_SUFFIX);
+	}
+
+	private static long generationNumber(Path path) {
+		String name = path.getFileName().toString();
+		try {
+			return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+		} catch (NumberFormatException | IndexOutOfBoundsException e) {
+			return -1;
+		}
+	}
+
+	private static int checksum(ByteBuffer payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload.duplicate());
+		return (int) crc.getValue();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+		long position = offset;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException("Unexpected end of tile archive");
+			}
+			position += read;
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+		long position = offset;
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private record Entry(long offset, int length, int checksum) {
+	}
+
+	private static final class Generation {
+		private Path path;
+		private final long number;
+		private final FileChannel channel;
+		private final ConcurrentSkipListMap<Long, Entry> index = new ConcurrentSkipListMap<>();
+		private long end;
+		private volatile long deadBytes;
+		private volatile @Nullable MappedByteBuffer mapped;
+
+		private Generation(Path path, long number, FileChannel channel) {
+			this.path = path;
+			this.number = number;
+			this.channel = channel;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package com.yucareux.tellus.world.data.cache;
+
+public final class TileId {
+	public static final int MAX_ZOOM = 31;
+
+	private TileId() {
+	}
+
+	public static long zxyToTileId(int z, int x, int y) {
+		if (z > MAX_ZOOM) {
+			throw new IllegalArgumentException("Tile zoom exceeds 64-bit limit");
+		}
+		int max = (1 << z) - 1;
+		if (x < 0 || y < 0 || x > max || y > max) {
+			throw new IllegalArgumentException("Tile x/y outside zoom bounds");
+		}
+		long acc = ((1L << (z * 2)) - 1) / 3;
+		for (int a = z - 1; a >= 0; a--) {
+			int s = 1 << a;
+			int rx = s & x;
+			int ry = s & y;
+			acc += ((long) ((3 * rx) ^ ry)) << a;
+			if (ry == 0) {
+				if (rx != 0) {
+					x = s - 1 - x;
+					y = s - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return acc;
+	}
+}
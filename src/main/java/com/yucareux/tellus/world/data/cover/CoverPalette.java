@@ -0,0 +1,48 @@
+package com.yucareux.tellus.world.data.cover;
+
+import java.util.Arrays;
+
+final class CoverPalette {
+	static final int SIZE = 16;
+
+	private static final int[] CLASSES = { 0, 10, 20, 30, 40, 50, 60, 70, 80, 90, 95, 100 };
+	private static final byte[] INDEX = new byte[256];
+
+	static {
+		Arrays.fill(INDEX, (byte) -1);
+		for (int i = 0; i < CLASSES.length; i++) {
+			INDEX[CLASSES[i]] = (byte) i;
+		}
+	}
+
+	private CoverPalette() {
+	}
+
+	static int index(int coverClass) {
+		return INDEX[coverClass & 0xFF];
+	}
+
+	static int coverClass(int index) {
+		return index < CLASSES.length ? CLASSES[index] : 0;
+	}
+
+	static int packedLength(int pixels) {
+		return (pixels + 1) >>> 1;
+	}
+
+	static byte[] pack(byte[] classes, int length) {
+		byte[] packed = new byte[packedLength(length)];
+		for (int i = 0; i < length; i++) {
+			int index = INDEX[classes[i] & 0xFF];
+			if (index < 0) {
+				return null;
+			}
+			packed[i >>> 1] |= (byte) (index << ((i & 1) << 2));
+		}
+		return packed;
+	}
+
+	static int unpack(byte packed, int pixelIndex) {
+		return coverClass((packed >>> ((pixelIndex & 1) << 2)) & 0xF);
+	}
+}
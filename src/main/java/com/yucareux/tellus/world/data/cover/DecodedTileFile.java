@@ -0,0 +1,175 @@
+package com.yucareux.tellus.world.data.cover;
+
+import com.yucareux.tellus.Tellus;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+final class DecodedTileFile {
+	private static final int MAGIC = 0x54444354;
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 32;
+	private static final int PAGE_SIZE = 4096;
+	private static final long SEGMENT_BYTES = 1L << 30;
+
+	private final Path path;
+	private final FileChannel channel;
+	private final int tileBytes;
+	private final int tileCount;
+	private final int tilesPerSegment;
+	private final long dataOffset;
+	private final AtomicLongArray present;
+	private final AtomicReferenceArray<MappedByteBuffer> segments;
+
+	private DecodedTileFile(Path path, FileChannel channel, int tileBytes, int tileCount, AtomicLongArray present) {
+		this.path = path;
+		this.channel = channel;
+		this.tileBytes = tileBytes;
+		this.tileCount = tileCount;
+		this.tilesPerSegment = (int) Math.max(1L, SEGMENT_BYTES / tileBytes);
+		this.dataOffset = dataOffset(present.length());
+		this.present = present;
+		this.segments = new AtomicReferenceArray<>((tileCount + this.tilesPerSegment - 1) / this.tilesPerSegment);
+	}
+
+	static DecodedTileFile open(Path path, int width, int height, int tileWidth, int tileHeight) throws IOException {
+		int tileBytes = CoverPalette.packedLength(tileWidth * tileHeight);
+		int tileCount = ((width + tileWidth - 1) / tileWidth) * ((height + tileHeight - 1) / tileHeight);
+		int words = (tileCount + 63) >>> 6;
+		Files.createDirectories(path.getParent());
+		FileChannel channel = FileChannel.open(
+				path,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.SPARSE
+		);
+		try {
+			AtomicLongArray present = new AtomicLongArray(words);
+			if (!readExisting(channel, width, height, tileWidth, tileHeight, present)) {
+				channel.truncate(0);
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(tileWidth).putInt(tileHeight);
+				header.clear();
+				TiffSource.writeFully(channel, header, 0);
+				TiffSource.writeFully(channel, ByteBuffer.allocate(words * Long.BYTES), HEADER_SIZE);
+				long end = dataOffset(words) + (long) tileCount * tileBytes;
+				TiffSource.writeFully(channel, ByteBuffer.allocate(1), end - 1);
+			}
+			return new DecodedTileFile(path, channel, tileBytes, tileCount, present);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	int get(int tileIndex, int pixelIndex) {
+		if ((this.present.get(tileIndex >>> 6) & (1L << tileIndex)) == 0) {
+			return -1;
+		}
+		MappedByteBuffer segment = this.segments.get(tileIndex / this.tilesPerSegment);
+		if (segment == null) {
+			try {
+				segment = segment(tileIndex / this.tilesPerSegment);
+			} catch (IOException e) {
+				return -1;
+			}
+		}
+		int offset = (tileIndex % this.tilesPerSegment) * this.tileBytes + (pixelIndex >>> 1);
+		return CoverPalette.unpack(segment.get(offset), pixelIndex);
+	}
+
+	void put(int tileIndex, byte[] packed) {
+		if (packed.length != this.tileBytes || tileIndex < 0 || tileIndex >= this.tileCount) {
+			return;
+		}
+		int word = tileIndex >>> 6;
+		long mask = 1L << tileIndex;
+		if ((this.present.get(word) & mask) != 0) {
+			return;
+		}
+		try {
+			int offset = (tileIndex % this.tilesPerSegment) * this.tileBytes;
+			MappedByteBuffer segment = segment(tileIndex / this.tilesPerSegment);
+			segment.put(offset, packed);
+			segment.force(offset, packed.length);
+			long current;
+			do {
+				current = this.present.get(word);
+			} while ((current & mask) == 0 && !this.present.compareAndSet(word, current, current | mask));
+			synchronized (this.present) {
+				ByteBuffer bits = ByteBuffer.allocate(Long.BYTES).putLong(0, this.present.get(word));
+				TiffSource.writeFully(this.channel, bits, HEADER_SIZE + (long) word * Long.BYTES);
+			}
+		} catch (IOException e) {
+			Tellus.LOGGER.debug("Failed to store decoded land cover tile {} in {}", tileIndex, this.path, e);
+		}
+	}
+
+	void close() throws IOException {
+		this.channel.close();
+	}
+
+	private MappedByteBuffer segment(int index) throws IOException {
+		MappedByteBuffer segment = this.segments.get(index);
+		if (segment != null) {
+			return segment;
+		}
+		synchronized (this.segments) {
+			segment = this.segments.get(index);
+			if (segment == null) {
+				long first = (long) index * this.tilesPerSegment;
+				long tiles = Math.min(this.tilesPerSegment, this.tileCount - first);
+				segment = this.channel.map(
+						FileChannel.MapMode.READ_WRITE,
+						this.dataOffset + first * this.tileBytes,
+						tiles * this.tileBytes
+				);
+				this.segments.set(index, segment);
+			}
+			return segment;
+		}
+	}
+
+	private static boolean readExisting(
+			FileChannel channel,
+			int width,
+			int height,
+			int tileWidth,
+			int tileHeight,
+			AtomicLongArray present
+	) throws IOException {
+		int words = present.length();
+		if (channel.size() < dataOffset(words)) {
+			return false;
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + words * Long.BYTES);
+		TiffSource.readFully(channel, header, 0);
+		header.flip();
+		if (header.getInt() != MAGIC
+				|| header.getInt() != VERSION
+				|| header.getInt() != width
+				|| header.getInt() != height
+				|| header.getInt() != tileWidth
+				|| header.getInt() != tileHeight) {
+			Tellus.LOGGER.warn("Discarding mismatched decoded land cover sidecar");
+			return false;
+		}
+		header.position(HEADER_SIZE);
+		for (int i = 0; i < words; i++) {
+			present.set(i, header.getLong());
+		}
+		return true;
+	}
+
+	private static long dataOffset(int words) {
+		long headerEnd = HEADER_SIZE + (long) words * Long.BYTES;
+		return (headerEnd + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+	}
+}
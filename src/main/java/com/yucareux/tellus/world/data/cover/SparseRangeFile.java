@@ -0,0 +1,349 @@
+package com.yucareux.tellus.world.data.cover;
+
+import com.yucareux.tellus.Tellus;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.jspecify.annotations.Nullable;
+
+final class SparseRangeFile implements TiffSource {
+	private static final int MAGIC = 0x54535246;
+	private static final int VERSION = 2;
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private static final int LOCK_STRIPES = 32;
+	private static final int MAX_BLOCKS_PER_REQUEST = 256;
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+	private static final String RANGES_SUFFIX = ".ranges";
+	private static final long PERSIST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+	private final URI uri;
+	private final Path path;
+	private final Path rangesPath;
+	private volatile FileChannel channel;
+	private volatile boolean closed;
+	private final long length;
+	private final @Nullable String validator;
+	private final int blockCount;
+	private final AtomicLongArray present;
+	private final Object[] locks = new Object[LOCK_STRIPES];
+	private final AtomicBoolean dirty = new AtomicBoolean();
+	private volatile long lastPersist = System.nanoTime();
+
+	private SparseRangeFile(
+			URI uri,
+			Path path,
+			FileChannel channel,
+			long length,
+			@Nullable String validator,
+			AtomicLongArray present
+	) {
+		this.uri = uri;
+		this.path = path;
+		this.rangesPath = rangesPath(path);
+		this.channel = channel;
+		this.length = length;
+		this.validator = validator;
+		this.blockCount = (int) ((length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+		this.present = present;
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			this.locks[i] = new Object();
+		}
+	}
+
+	static @Nullable SparseRangeFile open(URI uri, Path path) throws IOException {
+		SparseRangeFile existing = openExisting(uri, path);
+		if (existing != null) {
+			return existing;
+		}
+
+		Range first = request(uri, 0, BLOCK_SIZE - 1L, null);
+		if (first == null) {
+			return null;
+		}
+		Files.createDirectories(path.getParent());
+		FileChannel channel = FileChannel.open(
+				path,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.SPARSE
+		);
+		try {
+			int blocks = (int) ((first.total() + BLOCK_SIZE - 1) / BLOCK_SIZE);
+			SparseRangeFile file = new SparseRangeFile(
+					uri,
+					path,
+					channel,
+					first.total(),
+					first.validator(),
+					new AtomicLongArray((blocks + 63) >>> 6)
+			);
+			file.store(channel, first);
+			return file;
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public void read(ByteBuffer buffer, long offset) throws IOException {
+		int length = buffer.remaining();
+		if (offset < 0 || offset + length > this.length) {
+			throw new IOException("Read outside of " + this.uri + " at " + offset);
+		}
+		int start = buffer.position();
+		FileChannel channel = this.channel;
+		try {
+			read(channel, buffer, offset, length);
+		} catch (ClosedChannelException e) {
+			buffer.position(start);
+			FileChannel reopened = reopen(channel);
+			try {
+				read(reopened, buffer, offset, length);
+			} finally {
+				if (reopened != this.channel) {
+					persistRanges(reopened);
+					reopened.close();
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		FileChannel channel;
+		synchronized (this) {
+			this.closed = true;
+			channel = this.channel;
+		}
+		if (!this.dirty.get()) {
+			channel.close();
+			return;
+		}
+		if (!channel.isOpen()) {
+			channel = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		try {
+			persistRanges(channel);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void read(FileChannel channel, ByteBuffer buffer, long offset, int length) throws IOException {
+		if (length > 0) {
+			ensure(channel, blockOf(offset), blockOf(offset + length - 1));
+		}
+		TiffSource.readFully(channel, buffer, offset);
+	}
+
+	private synchronized FileChannel reopen(FileChannel stale) throws IOException {
+		if (this.closed) {
+			return FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		if (this.channel == stale) {
+			this.channel = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		return this.channel;
+	}
+
+	private void ensure(FileChannel channel, int firstBlock, int lastBlock) throws IOException {
+		int block = firstBlock;
+		while (block <= lastBlock) {
+			if (isPresent(block)) {
+				block++;
+				continue;
+			}
+			int runEnd = block;
+			while (runEnd < lastBlock && runEnd - block + 1 < MAX_BLOCKS_PER_REQUEST && !isPresent(runEnd + 1)) {
+				runEnd++;
+			}
+			synchronized (this.locks[block % LOCK_STRIPES]) {
+				if (!isPresent(block)) {
+					long start = (long) block * BLOCK_SIZE;
+					long end = Math.min(this.length, (long) (runEnd + 1) * BLOCK_SIZE) - 1;
+					Range range = request(this.uri, start, end, this.validator);
+					if (range == null
+							|| range.total() != this.length
+							|| (this.validator != null && range.validator() != null && !this.validator.equals(range.validator()))) {
+						throw new IOException("Remote file changed or disappeared: " + this.uri);
+					}
+					store(channel, range);
+				}
+			}
+			block = runEnd + 1;
+		}
+	}
+
+	private void store(FileChannel channel, Range range) throws IOException {
+		TiffSource.writeFully(channel, ByteBuffer.wrap(range.data()), range.start());
+		long end = range.start() + range.data().length;
+		int first = (int) ((range.start() + BLOCK_SIZE - 1) / BLOCK_SIZE);
+		int last = end >= this.length ? this.blockCount - 1 : (int) (end / BLOCK_SIZE) - 1;
+		for (int block = first; block <= last; block++) {
+			markPresent(block);
+		}
+		this.dirty.set(true);
+		if (System.nanoTime() - this.lastPersist >= PERSIST_INTERVAL_NANOS) {
+			persistRanges(channel);
+		}
+	}
+
+	private boolean isPresent(int block) {
+		return (this.present.get(block >>> 6) & (1L << block)) != 0;
+	}
+
+	private void markPresent(int block) {
+		int word = block >>> 6;
+		long mask = 1L << block;
+		long current;
+		do {
+			current = this.present.get(word);
+		} while ((current & mask) == 0 && !this.present.compareAndSet(word, current, current | mask));
+	}
+
+	private int blockOf(long offset) {
+		return (int) (offset / BLOCK_SIZE);
+	}
+
+	private void persistRanges(FileChannel channel) {
+		Path tempPath = this.rangesPath.resolveSibling(this.rangesPath.getFileName() + ".tmp");
+		synchronized (this.present) {
+			if (!this.dirty.getAndSet(false)) {
+				return;
+			}
+			this.lastPersist = System.nanoTime();
+			int words = this.present.length();
+			byte[] validator = this.validator != null ? this.validator.getBytes(StandardCharsets.UTF_8) : new byte[0];
+			ByteBuffer buffer = ByteBuffer.allocate(20 + validator.length + words * Long.BYTES);
+			buffer.putInt(MAGIC).putInt(VERSION).putLong(this.length);
+			buffer.putInt(validator.length).put(validator);
+			for (int i = 0; i < words; i++) {
+				buffer.putLong(this.present.get(i));
+			}
+			buffer.flip();
+			try {
+				channel.force(false);
+				try (FileChannel output = FileChannel.open(
+						tempPath,
+						StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING
+				)) {
+					TiffSource.writeFully(output, buffer, 0);
+					output.force(true);
+				}
+				Files.move(tempPath, this.rangesPath, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				this.dirty.set(true);
+				Tellus.LOGGER.debug("Failed to persist fetched ranges for {}", this.path, e);
+			}
+		}
+	}
+
+	private static @Nullable SparseRangeFile openExisting(URI uri, Path path) throws IOException {
+		Path rangesPath = rangesPath(path);
+		if (!Files.exists(path) || !Files.exists(rangesPath)) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(rangesPath));
+		if (buffer.remaining() < 20 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			Tellus.LOGGER.warn("Discarding unreadable range index {}", rangesPath);
+			return null;
+		}
+		long length = buffer.getLong();
+		int validatorLength = buffer.getInt();
+		if (validatorLength < 0 || validatorLength > buffer.remaining()) {
+			Tellus.LOGGER.warn("Discarding unreadable range index {}", rangesPath);
+			return null;
+		}
+		byte[] validatorBytes = new byte[validatorLength];
+		buffer.get(validatorBytes);
+		String validator = validatorLength > 0 ? new String(validatorBytes, StandardCharsets.UTF_8) : null;
+		int blocks = (int) ((length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+		int words = (blocks + 63) >>> 6;
+		if (length <= 0 || buffer.remaining() != words * Long.BYTES) {
+			Tellus.LOGGER.warn("Discarding unreadable range index {}", rangesPath);
+			return null;
+		}
+		AtomicLongArray present = new AtomicLongArray(words);
+		for (int i = 0; i < words; i++) {
+			present.set(i, buffer.getLong());
+		}
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		return new SparseRangeFile(uri, path, channel, length, validator, present);
+	}
+
+	private static @Nullable Range request(URI uri, long start, long end, @Nullable String validator) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+		connection.setConnectTimeout(8000);
+		connection.setReadTimeout(8000);
+		connection.setRequestProperty("User-Agent", "Tellus/1.0 (Minecraft Mod)");
+		connection.setRequestProperty("Range", "bytes=" + start + "-" + end);
+		if (validator != null) {
+			connection.setRequestProperty("If-Range", validator);
+		}
+		int status = connection.getResponseCode();
+		if (status == 404) {
+			connection.disconnect();
+			return null;
+		}
+		if (status != HttpURLConnection.HTTP_PARTIAL) {
+			connection.disconnect();
+			if (validator != null && status == HttpURLConnection.HTTP_OK) {
+				throw new IOException("Remote file changed: " + uri);
+			}
+			throw new IOException("Range request to " + uri + " returned HTTP " + status);
+		}
+		String contentRange = connection.getHeaderField("Content-Range");
+		Matcher matcher = contentRange == null ? null : CONTENT_RANGE.matcher(contentRange);
+		if (matcher == null || !matcher.matches()) {
+			throw new IOException("Missing Content-Range from " + uri);
+		}
+		long rangeStart = Long.parseLong(matcher.group(1));
+		long rangeEnd = Long.parseLong(matcher.group(2));
+		long total = Long.parseLong(matcher.group(3));
+		if (rangeStart != start || rangeEnd < rangeStart) {
+			throw new IOException("Unexpected Content-Range " + contentRange + " from " + uri);
+		}
+		try (InputStream input = connection.getInputStream()) {
+			byte[] data = input.readNBytes((int) (rangeEnd - rangeStart + 1));
+			if (data.length != rangeEnd - rangeStart + 1) {
+				throw new IOException("Truncated range response from " + uri);
+			}
+			return new Range(rangeStart, data, total, validator(connection));
+		}
+	}
+
+	private static @Nullable String validator(HttpURLConnection connection) {
+		String etag = connection.getHeaderField("ETag");
+		if (etag != null && !etag.isBlank() && !etag.startsWith("W/")) {
+			return etag.trim();
+		}
+		String lastModified = connection.getHeaderField("Last-Modified");
+		return lastModified != null && !lastModified.isBlank() ? lastModified.trim() : null;
+	}
+
+	private static Path rangesPath(Path path) {
+		return path.resolveSibling(path.getFileName() + RANGES_SUFFIX);
+	}
+
+	private record Range(long start, byte[] data, long total, @Nullable String validator) {
+	}
+}
@@ -1,11 +1,11 @@
 package com.yucareux.tellus.world.data.cover;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.yucareux.tellus.Tellus;
-import java.io.ByteArrayInputStream;
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
@@ -13,16 +13,24 @@ import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.ClosedByInterruptException;
-import java.nio.channels.ClosedChannelException;
-import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.zip.InflaterInputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.util.Mth;
 
@@ -40,16 +48,43 @@ public final class TellusLandCoverSource {
 	private static final double RESOLUTION_METERS = 10.0;
 	private static final double DOWNSAMPLE_START_PIXELS = 4.0;
 	private static final int MAX_DOWNSAMPLE_STEP = 256;
-	private static final int TILE_CACHE_ENTRIES = intProperty("tellus.landcover.tileCacheEntries", 32);
+	private static final long MAX_TILE_CACHE_BYTES =
+			intProperty("tellus.landcover.tileCacheMegabytes", 128) * 1024L * 1024L;
+	private static final int TILE_OVERHEAD_BYTES = 64;
 	private static final int SMOOTH_RADIUS_PIXELS = 1;
+	private static final int MAX_SMOOTH_SPAN_RATIO = 4;
 	private static final ThreadLocal<CoverSmoothScratch> COVER_SMOOTH_SCRATCH =
 			ThreadLocal.withInitial(CoverSmoothScratch::new);
+	private static final ThreadLocal<InflateScratch> INFLATE_SCRATCH = ThreadLocal.withInitial(InflateScratch::new);
+	private static final int DECODE_BATCH_TILES = 64;
+	private static final ForkJoinPool DECODE_POOL = new ForkJoinPool(
+			intProperty("tellus.landcover.decodeThreads", Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2))),
+			pool -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("tellus-cover-decode-" + thread.getPoolIndex());
+				thread.setDaemon(true);
+				return thread;
+			},
+			null,
+			false
+	);
+	private static final ExecutorService TILE_OPENER = Executors.newFixedThreadPool(2, runnable -> {
+		Thread thread = new Thread(runnable, "tellus-cover-open");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static final boolean RANGE_REQUESTS =
+			Boolean.parseBoolean(System.getProperty("tellus.landcover.rangeRequests", "true"));
+	private static final boolean DECODED_SIDECAR =
+			Boolean.parseBoolean(System.getProperty("tellus.landcover.decodedSidecar", "false"));
 
 	private static final String ENDPOINT = "https://esa-worldcover.s3.eu-central-1.amazonaws.com/v200/2021/map";
 	private static final String TILE_PATTERN = "ESA_WorldCover_10m_2021_v200_%s_Map.tif";
 
 	private final Path cacheRoot;
 	private final LoadingCache<TileKey, GeoTiffTile> cache;
+	private final Set<TileKey> opening = ConcurrentHashMap.newKeySet();
 
 	public TellusLandCoverSource() {
 		this.cacheRoot = FabricLoader.getInstance().getGameDir().resolve("tellus/cache/worldcover2021");
@@ -88,7 +123,7 @@ public final class TellusLandCoverSource {
 		double lon = blockX / blocksPerDegree;
 		double lat = -blockZ / blocksPerDegree;
 
-		return sampleCoverClassAtLonLat(lon, lat);
+		return sampleCoverClassAtLonLat(lon, lat, overviewFactor(worldScale));
 	}
 
 	public int sampleSmoothedCoverClass(double blockX, double blockZ, double worldScale) {
@@ -105,24 +140,188 @@ public final class TellusLandCoverSource {
 		double blocksPerDegree = metersPerDegree / worldScale;
 		double lon = blockX / blocksPerDegree;
 		double lat = -blockZ / blocksPerDegree;
-		return sampleSmoothedCoverClassAtLonLat(lon, lat, SMOOTH_RADIUS_PIXELS);
+		return sampleSmoothedCoverClassAtLonLat(lon, lat, overviewFactor(worldScale), SMOOTH_RADIUS_PIXELS);
 	}
 
-	private int sampleCoverClassAtLonLat(double lon, double lat) {
+	public void sampleCoverGrid(int minX, int minZ, int width, int height, int step, double worldScale, byte[] out) {
+		sampleCoverGrid(minX, minZ, width, height, step, worldScale, false, out);
+	}
+
+	public void sampleCoverGrid(
+			double minX,
+			double minZ,
+			int width,
+			int height,
+			double step,
+			double worldScale,
+			byte[] out
+	) {
+		sampleCoverGrid(minX, minZ, width, height, step, worldScale, false, out);
+	}
+
+	public void sampleSmoothedCoverGrid(
+			int minX,
+			int minZ,
+			int width,
+			int height,
+			int step,
+			double worldScale,
+			byte[] out
+	) {
+		sampleCoverGrid(minX, minZ, width, height, step, worldScale, true, out);
+	}
+
+	private void sampleCoverGrid(
+			double minX,
+			double minZ,
+			int width,
+			int height,
+			double step,
+			double worldScale,
+			boolean smoothed,
+			byte[] out
+	) {
+		int area = width * height;
+		if (width < 0 || height < 0 || step <= 0.0 || out.length < area) {
+			throw new IllegalArgumentException("Invalid land cover grid");
+		}
+		if (worldScale <= 0.0 || area == 0) {
+			Arrays.fill(out, 0, area, (byte) 0);
+			return;
+		}
+
+		int downsample = downsampleStep(worldScale, RESOLUTION_METERS);
+		double blocksPerDegree = EQUATOR_CIRCUMFERENCE / 360.0 / worldScale;
+		double[] lons = new double[width];
+		for (int column = 0; column < width; column++) {
+			double blockX = minX + column * step;
+			if (downsample > 1) {
+				blockX = downsampleBlock(blockX, downsample);
+			}
+			lons[column] = blockX / blocksPerDegree;
+		}
+		double[] lats = new double[height];
+		for (int row = 0; row < height; row++) {
+			double blockZ = minZ + row * step;
+			if (downsample > 1) {
+				blockZ = downsampleBlock(blockZ, downsample);
+			}
+			lats[row] = -blockZ / blocksPerDegree;
+		}
+
+		CoverCursor cursor = new CoverCursor(overviewFactor(worldScale));
+		if (smoothed && sampleSmoothedGrid(cursor, lons, lats, SMOOTH_RADIUS_PIXELS, out)) {
+			return;
+		}
+		for (int row = 0; row < height; row++) {
+			int rowIndex = row * width;
+			for (int column = 0; column < width; column++) {
+				int value = smoothed
+						? sampleSmoothedCoverClassAtLonLat(lons[column], lats[row], cursor.overviewFactor, SMOOTH_RADIUS_PIXELS)
+						: cursor.sample(lons[column], lats[row]);
+				out[rowIndex + column] = (byte) value;
+			}
+		}
+	}
+
+	private boolean sampleSmoothedGrid(CoverCursor cursor, double[] lons, double[] lats, int radius, byte[] out) {
+		GeoTiffTile.Level level = cursor.level(lons[0], lats[0]);
+		if (level == null || level == GeoTiffTile.Level.EMPTY) {
+			return false;
+		}
+		int width = lons.length;
+		int height = lats.length;
+		int[] pixelXs = new int[width];
+		int[] pixelYs = new int[height];
+		int minPixelX = Integer.MAX_VALUE;
+		int maxPixelX = Integer.MIN_VALUE;
+		int minPixelY = Integer.MAX_VALUE;
+		int maxPixelY = Integer.MIN_VALUE;
+		for (int column = 0; column < width; column++) {
+			pixelXs[column] = level.pixelX(lons[column]);
+			minPixelX = Math.min(minPixelX, pixelXs[column]);
+			maxPixelX = Math.max(maxPixelX, pixelXs[column]);
+		}
+		for (int row = 0; row < height; row++) {
+			pixelYs[row] = level.pixelY(lats[row]);
+			minPixelY = Math.min(minPixelY, pixelYs[row]);
+			maxPixelY = Math.max(maxPixelY, pixelYs[row]);
+		}
+		long spanWidth = (long) maxPixelX - minPixelX + 1 + 2L * radius;
+		long spanHeight = (long) maxPixelY - minPixelY + 1 + 2L * radius;
+		long window = (width + 2L * radius) * (height + 2L * radius);
+		if (spanWidth * spanHeight > MAX_SMOOTH_SPAN_RATIO * window) {
+			return false;
+		}
+
+		int spanW = (int) spanWidth;
+		int spanH = (int) spanHeight;
+		int originX = minPixelX - radius;
+		int originY = minPixelY - radius;
+		byte[] classes = new byte[spanW * spanH];
+		for (int y = 0; y < spanH; y++) {
+			int pixelY = originY + y;
+			double lat = level.latForPixel(pixelY);
+			for (int x = 0; x < spanW; x++) {
+				int pixelX = originX + x;
+				int value = level.isInside(pixelX, pixelY)
+						? level.sampleValue(pixelX, pixelY, cursor)
+						: cursor.sample(level.lonForPixel(pixelX), lat);
+				classes[y * spanW + x] = (byte) value;
+			}
+		}
+
+		int innerW = spanW - 2 * radius;
+		int innerH = spanH - 2 * radius;
+		byte[] majority = new byte[innerW * innerH];
+		CoverSmoothScratch scratch = COVER_SMOOTH_SCRATCH.get();
+		for (int y = 0; y < innerH; y++) {
+			scratch.reset();
+			for (int dy = 0; dy <= 2 * radius; dy++) {
+				int rowStart = (y + dy) * spanW;
+				for (int dx = 0; dx < 2 * radius; dx++) {
+					scratch.addSmoothed(Byte.toUnsignedInt(classes[rowStart + dx]));
+				}
+			}
+			for (int x = 0; x < innerW; x++) {
+				for (int dy = 0; dy <= 2 * radius; dy++) {
+					scratch.addSmoothed(Byte.toUnsignedInt(classes[(y + dy) * spanW + x + 2 * radius]));
+				}
+				int center = Byte.toUnsignedInt(classes[(y + radius) * spanW + x + radius]);
+				majority[y * innerW + x] = (byte) (center == WATER_CLASS || center == NO_DATA_CLASS
+						? center
+						: scratch.pickMajority(center));
+				for (int dy = 0; dy <= 2 * radius; dy++) {
+					scratch.removeSmoothed(Byte.toUnsignedInt(classes[(y + dy) * spanW + x]));
+				}
+			}
+		}
+
+		for (int row = 0; row < height; row++) {
+			int majorityRow = (pixelYs[row] - minPixelY) * innerW;
+			int rowIndex = row * width;
+			for (int column = 0; column < width; column++) {
+				out[rowIndex + column] = majority[majorityRow + pixelXs[column] - minPixelX];
+			}
+		}
+		return true;
+	}
+
+	private int sampleCoverClassAtLonLat(double lon, double lat, double overviewFactor) {
 		TileKey key = tileKeyForLonLat(lon, lat);
 		if (key == null) {
 			return 0;
 		}
-		GeoTiffTile tile = getTile(key);
+		GeoTiffTile.Level tile = getTile(key).level(overviewFactor);
 		return tile.sample(lon, lat);
 	}
 
-	private int sampleSmoothedCoverClassAtLonLat(double lon, double lat, int radiusPixels) {
+	private int sampleSmoothedCoverClassAtLonLat(double lon, double lat, double overviewFactor, int radiusPixels) {
 		TileKey key = tileKeyForLonLat(lon, lat);
 		if (key == null) {
 			return 0;
 		}
-		GeoTiffTile tile = getTile(key);
+		GeoTiffTile.Level tile = getTile(key).level(overviewFactor);
 		Pixel center = tile.toPixel(lon, lat);
 		if (center == null) {
 			return 0;
@@ -158,7 +357,7 @@ public final class TellusLandCoverSource {
 					} else {
 						double neighborLon = tile.lonForPixel(px);
 						double neighborLat = tile.latForPixel(py);
-						value = sampleCoverClassAtLonLat(neighborLon, neighborLat);
+						value = sampleCoverClassAtLonLat(neighborLon, neighborLat, overviewFactor);
 					}
 					if (value == WATER_CLASS || value == NO_DATA_CLASS) {
 						continue;
@@ -192,6 +391,62 @@ public final class TellusLandCoverSource {
 		}
 	}
 
+	public void decodeTiles(int minX, int minZ, int maxX, int maxZ, double worldScale) {
+		if (worldScale <= 0.0) {
+			return;
+		}
+		double blocksPerDegree = EQUATOR_CIRCUMFERENCE / 360.0 / worldScale;
+		double west = Math.max(MIN_LON, Math.min(minX, maxX) / blocksPerDegree);
+		double east = Math.min(MAX_LON, Math.max(minX, maxX) / blocksPerDegree);
+		double north = Math.min(MAX_LAT, -Math.min(minZ, maxZ) / blocksPerDegree);
+		double south = Math.max(MIN_LAT, -Math.max(minZ, maxZ) / blocksPerDegree);
+		if (west > east || south > north) {
+			return;
+		}
+		double overviewFactor = overviewFactor(worldScale);
+		List<DecodedTileKey> pending = new ArrayList<>();
+		int minTileLat = (int) Math.floor(south / TILE_DEGREES) * TILE_DEGREES;
+		int maxTileLat = (int) Math.floor(north / TILE_DEGREES) * TILE_DEGREES;
+		int minTileLon = (int) Math.floor(west / TILE_DEGREES) * TILE_DEGREES;
+		int maxTileLon = (int) Math.floor(east / TILE_DEGREES) * TILE_DEGREES;
+		for (int tileLat = minTileLat; tileLat <= maxTileLat; tileLat += TILE_DEGREES) {
+			for (int tileLon = minTileLon; tileLon <= maxTileLon; tileLon += TILE_DEGREES) {
+				TileKey key = new TileKey(tileLat, tileLon);
+				GeoTiffTile tile = this.cache.getIfPresent(key);
+				if (tile == null) {
+					openTileAsync(key);
+					continue;
+				}
+				tile.level(overviewFactor).collectPending(west, north, east, south, pending);
+			}
+		}
+		if (pending.isEmpty()) {
+			return;
+		}
+		for (int start = 0; start < pending.size(); start += DECODE_BATCH_TILES) {
+			int end = Math.min(pending.size(), start + DECODE_BATCH_TILES);
+			DECODE_POOL.invoke(new DecodeTask(pending, start, end));
+		}
+	}
+
+	private void openTileAsync(TileKey key) {
+		if (!this.opening.add(key)) {
+			return;
+		}
+		try {
+			TILE_OPENER.execute(() -> {
+				try {
+					prefetchTile(key);
+				} finally {
+					this.opening.remove(key);
+				}
+			});
+		} catch (RuntimeException e) {
+			this.opening.remove(key);
+			throw e;
+		}
+	}
+
 	private static int downsampleStep(double worldScale, double resolutionMeters) {
 		if (worldScale <= 0.0 || resolutionMeters <= 0.0) {
 			return 1;
@@ -204,6 +459,11 @@ public final class TellusLandCoverSource {
 		return Mth.clamp(step, 1, MAX_DOWNSAMPLE_STEP);
 	}
 
+	private static double overviewFactor(double worldScale) {
+		double pixelsPerBlock = worldScale / RESOLUTION_METERS;
+		return pixelsPerBlock > DOWNSAMPLE_START_PIXELS ? pixelsPerBlock : 1.0;
+	}
+
 	private static double downsampleBlock(double blockCoord, int step) {
 		if (step <= 1) {
 			return blockCoord;
@@ -273,8 +533,21 @@ public final class TellusLandCoverSource {
 
 	private GeoTiffTile loadTile(TileKey key) throws IOException {
 		Path cachePath = this.cacheRoot.resolve(key.fileName());
+		Path decodedPath = DECODED_SIDECAR ? this.cacheRoot.resolve(key.fileName() + ".decoded") : null;
 		if (Files.exists(cachePath)) {
-			return GeoTiffTile.open(cachePath);
+			return GeoTiffTile.open(cachePath, TiffSource.open(cachePath), decodedPath);
+		}
+		if (RANGE_REQUESTS) {
+			Path partialPath = this.cacheRoot.resolve(key.fileName() + ".partial");
+			try {
+				SparseRangeFile partial = SparseRangeFile.open(tileUri(key), partialPath);
+				if (partial == null) {
+					return GeoTiffTile.MISSING;
+				}
+				return GeoTiffTile.open(partialPath, partial, decodedPath);
+			} catch (IOException e) {
+				Tellus.LOGGER.debug("Range requests failed for land cover tile {}, downloading whole file", key, e);
+			}
 		}
 		byte[] data = downloadTile(key);
 		if (data == null) {
@@ -282,11 +555,15 @@ public final class TellusLandCoverSource {
 		}
 
 		cacheTile(cachePath, data);
-		return GeoTiffTile.open(cachePath);
+		return GeoTiffTile.open(cachePath, TiffSource.open(cachePath), decodedPath);
+	}
+
+	private static URI tileUri(TileKey key) {
+		return URI.create(String.format("%s/%s", ENDPOINT, key.fileName()));
 	}
 
 	private byte[] downloadTile(TileKey key) throws IOException {
-		URI uri = URI.create(String.format("%s/%s", ENDPOINT, key.fileName()));
+		URI uri = tileUri(key);
 		HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
 		connection.setConnectTimeout(8000);
 		connection.setReadTimeout(8000);
@@ -325,6 +602,7 @@ public final class TellusLandCoverSource {
 	}
 
 	private static final class GeoTiffTile {
+		private static final int TAG_NEW_SUBFILE_TYPE = 254;
 		private static final int TAG_IMAGE_WIDTH = 256;
 		private static final int TAG_IMAGE_HEIGHT = 257;
 		private static final int TAG_TILE_WIDTH = 322;
@@ -338,195 +616,59 @@ public final class TellusLandCoverSource {
 		private static final int TYPE_SHORT = 3;
 		private static final int TYPE_LONG = 4;
 
+		private static final int SUBFILE_MASK = 4;
+		private static final int MAX_IFDS = 32;
 		private static final int COMPRESSION_DEFLATE = 8;
-		private static final GeoTiffTile MISSING = new GeoTiffTile();
+		private static final GeoTiffTile MISSING = new GeoTiffTile(null, null, new Level[] { Level.EMPTY });
 
 		private final Path path;
-		private final FileChannel channel;
-		private final int width;
-		private final int height;
-		private final int tileWidth;
-		private final int tileHeight;
-		private final int tilesPerRow;
-		private final long[] tileOffsets;
-		private final int[] tileByteCounts;
-		private final double pixelScaleX;
-		private final double pixelScaleY;
-		private final double tieLon;
-		private final double tieLat;
-		private final Map<Integer, byte[]> tileCache;
-
-		private GeoTiffTile() {
-			this.path = null;
-			this.channel = null;
-			this.width = 0;
-			this.height = 0;
-			this.tileWidth = 0;
-			this.tileHeight = 0;
-			this.tilesPerRow = 0;
-			this.tileOffsets = null;
-			this.tileByteCounts = null;
-			this.pixelScaleX = 0.0;
-			this.pixelScaleY = 0.0;
-			this.tieLon = 0.0;
-			this.tieLat = 0.0;
-			this.tileCache = Map.of();
-		}
-
-		private GeoTiffTile(
-				Path path,
-				FileChannel channel,
-				int width,
-				int height,
-				int tileWidth,
-				int tileHeight,
-				long[] tileOffsets,
-				int[] tileByteCounts,
-				double pixelScaleX,
-				double pixelScaleY,
-				double tieLon,
-				double tieLat
-		) {
+		private final TiffSource source;
+		private final Level[] levels;
+
+		private GeoTiffTile(Path path, TiffSource source, Level[] levels) {
 			this.path = path;
-			this.channel = channel;
-			this.width = width;
-			this.height = height;
-			this.tileWidth = tileWidth;
-			this.tileHeight = tileHeight;
-			this.tilesPerRow = (int) Math.ceil(width / (double) tileWidth);
-			this.tileOffsets = tileOffsets;
-			this.tileByteCounts = tileByteCounts;
-			this.pixelScaleX = pixelScaleX;
-			this.pixelScaleY = pixelScaleY;
-			this.tieLon = tieLon;
-			this.tieLat = tieLat;
-			this.tileCache = new LinkedHashMap<>(TILE_CACHE_ENTRIES, 0.75f, true) {
-				@Override
-				protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
-					return size() > TILE_CACHE_ENTRIES;
-				}
-			};
+			this.source = source;
+			this.levels = levels;
 		}
 
-		static GeoTiffTile open(Path path) throws IOException {
-			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		static GeoTiffTile open(Path path, TiffSource source, Path decodedPath) throws IOException {
 			try {
-				return readFromChannel(path, channel);
+				return readFromSource(path, source, decodedPath);
 			} catch (IOException e) {
-				channel.close();
+				source.close();
 				throw e;
 			}
 		}
 
-		int sample(double lon, double lat) {
-			Pixel pixel = toPixel(lon, lat);
-			if (pixel == null) {
-				return 0;
-			}
-			return sampleValue(pixel.x, pixel.y);
-		}
-
-		Pixel toPixel(double lon, double lat) {
-			if (this == MISSING) {
-				return null;
-			}
-			int pixelX = (int) Math.floor((lon - this.tieLon) / this.pixelScaleX);
-			int pixelY = (int) Math.floor((this.tieLat - lat) / this.pixelScaleY);
-			if (pixelX < 0 || pixelY < 0 || pixelX >= this.width || pixelY >= this.height) {
-				return null;
-			}
-			return new Pixel(pixelX, pixelY);
-		}
-
-		int sampleValue(int pixelX, int pixelY) {
-			if (this == MISSING || pixelX < 0 || pixelY < 0 || pixelX >= this.width || pixelY >= this.height) {
-				return 0;
-			}
-			int tileX = pixelX / this.tileWidth;
-			int tileY = pixelY / this.tileHeight;
-			int tileIndex = tileY * this.tilesPerRow + tileX;
-
-			byte[] tile;
-			try {
-				tile = getTile(tileIndex);
-			} catch (ClosedByInterruptException e) {
-				Thread.currentThread().interrupt();
-				return 0;
-			} catch (IOException e) {
-				Tellus.LOGGER.warn("Failed to read land cover tile {} in {}", tileIndex, this.path, e);
-				return 0;
+		Level level(double maxFactor) {
+			Level selected = this.levels[0];
+			for (int i = 1; i < this.levels.length; i++) {
+				if (this.levels[i].factor > maxFactor) {
+					break;
+				}
+				selected = this.levels[i];
 			}
-
-			int localX = pixelX - tileX * this.tileWidth;
-			int localY = pixelY - tileY * this.tileHeight;
-			return Byte.toUnsignedInt(tile[localX + localY * this.tileWidth]);
-		}
-
-		boolean isInside(int pixelX, int pixelY) {
-			return pixelX >= 0 && pixelY >= 0 && pixelX < this.width && pixelY < this.height;
-		}
-
-		boolean isNeighborhoodInBounds(int pixelX, int pixelY, int radius) {
-			return pixelX - radius >= 0
-					&& pixelY - radius >= 0
-					&& pixelX + radius < this.width
-					&& pixelY + radius < this.height;
-		}
-
-		double lonForPixel(int pixelX) {
-			return this.tieLon + (pixelX + 0.5) * this.pixelScaleX;
-		}
-
-		double latForPixel(int pixelY) {
-			return this.tieLat - (pixelY + 0.5) * this.pixelScaleY;
+			return selected;
 		}
 
 		void close() {
-			if (this.channel == null) {
+			if (this.source == null) {
 				return;
 			}
+			for (Level level : this.levels) {
+				level.invalidate();
+				level.closeDecoded();
+			}
 			try {
-				this.channel.close();
+				this.source.close();
 			} catch (IOException e) {
 				Tellus.LOGGER.warn("Failed to close land cover tile {}", this.path, e);
 			}
 		}
 
-		private byte[] getTile(int tileIndex) throws IOException {
-			synchronized (this.tileCache) {
-				byte[] cached = this.tileCache.get(tileIndex);
-				if (cached != null) {
-					return cached;
-				}
-			}
-
-			byte[] tile = readTile(tileIndex);
-			synchronized (this.tileCache) {
-				this.tileCache.put(tileIndex, tile);
-			}
-			return tile;
-		}
-
-		private byte[] readTile(int tileIndex) throws IOException {
-			long offset = this.tileOffsets[tileIndex];
-			int length = this.tileByteCounts[tileIndex];
-			byte[] compressed = new byte[length];
-			try {
-				readFully(this.channel, compressed, offset);
-			} catch (ClosedChannelException e) {
-				if (this.path == null) {
-					throw e;
-				}
-				try (FileChannel reopened = FileChannel.open(this.path, StandardOpenOption.READ)) {
-					readFully(reopened, compressed, offset);
-				}
-			}
-			return inflate(compressed, this.tileWidth * this.tileHeight);
-		}
-
-		private static GeoTiffTile readFromChannel(Path path, FileChannel channel) throws IOException {
+		private static GeoTiffTile readFromSource(Path path, TiffSource source, Path decodedPath) throws IOException {
 			ByteBuffer header = ByteBuffer.allocate(8);
-			readFully(channel, header, 0);
+			source.read(header, 0);
 			header.flip();
 
 			short order = header.getShort();
@@ -542,16 +684,79 @@ public final class TellusLandCoverSource {
 				throw new IOException("Invalid TIFF magic");
 			}
 
-			int ifdOffset = header.getInt();
+			List<Ifd> ifds = new ArrayList<>();
+			long ifdOffset = Integer.toUnsignedLong(header.getInt());
+			while (ifdOffset != 0 && ifds.size() < MAX_IFDS) {
+				Ifd ifd = readIfd(source, ifdOffset, byteOrder);
+				ifds.add(ifd);
+				ifdOffset = ifd.next();
+			}
+			if (ifds.isEmpty()) {
+				throw new IOException("Missing TIFF image directory");
+			}
+
+			Ifd base = ifds.get(0);
+			if (base.compression() != COMPRESSION_DEFLATE) {
+				throw new IOException("Unsupported TIFF compression " + base.compression());
+			}
+			if (!base.hasTiles()) {
+				throw new IOException("Missing TIFF size tags");
+			}
+			if (base.tileOffsets() == null || base.tileByteCounts() == null) {
+				throw new IOException("Missing TIFF tile offsets");
+			}
+			double[] pixelScale = base.pixelScale();
+			double[] tiepoint = base.tiepoint();
+			if (pixelScale == null || pixelScale.length < 2 || tiepoint == null || tiepoint.length < 5) {
+				throw new IOException("Missing TIFF georeference tags");
+			}
+
+			List<Level> levels = new ArrayList<>();
+			for (Ifd ifd : ifds) {
+				if (ifd != base && !ifd.isOverviewOf(base, COMPRESSION_DEFLATE, SUBFILE_MASK)) {
+					continue;
+				}
+				levels.add(new Level(
+						path,
+						source,
+						ifd.width(),
+						ifd.height(),
+						ifd.tileWidth(),
+						ifd.tileHeight(),
+						ifd.tileOffsets(),
+						ifd.tileByteCounts(),
+						pixelScale[0] * base.width() / ifd.width(),
+						pixelScale[1] * base.height() / ifd.height(),
+						tiepoint[3],
+						tiepoint[4],
+						(double) base.width() / ifd.width(),
+						ifd == base && decodedPath != null ? openDecoded(decodedPath, base) : null
+				));
+			}
+			levels.sort(Comparator.comparingDouble(level -> level.factor));
+			return new GeoTiffTile(path, source, levels.toArray(new Level[0]));
+		}
+
+		private static DecodedTileFile openDecoded(Path decodedPath, Ifd ifd) {
+			try {
+				return DecodedTileFile.open(decodedPath, ifd.width(), ifd.height(), ifd.tileWidth(), ifd.tileHeight());
+			} catch (IOException e) {
+				Tellus.LOGGER.warn("Failed to open decoded land cover sidecar {}", decodedPath, e);
+				return null;
+			}
+		}
+
+		private static Ifd readIfd(TiffSource source, long ifdOffset, ByteOrder byteOrder) throws IOException {
 			ByteBuffer countBuffer = ByteBuffer.allocate(2).order(byteOrder);
-			readFully(channel, countBuffer, ifdOffset);
+			source.read(countBuffer, ifdOffset);
 			countBuffer.flip();
 			int entryCount = Short.toUnsignedInt(countBuffer.getShort());
 
-			ByteBuffer entries = ByteBuffer.allocate(entryCount * 12).order(byteOrder);
-			readFully(channel, entries, ifdOffset + 2L);
+			ByteBuffer entries = ByteBuffer.allocate(entryCount * 12 + 4).order(byteOrder);
+			source.read(entries, ifdOffset + 2L);
 			entries.flip();
 
+			int subfileType = 0;
 			int width = -1;
 			int height = -1;
 			int tileWidth = -1;
@@ -568,46 +773,34 @@ public final class TellusLandCoverSource {
 				int count = entries.getInt();
 				int value = entries.getInt();
 				switch (tag) {
+					case TAG_NEW_SUBFILE_TYPE -> subfileType = readIntValue(type, count, value, byteOrder);
 					case TAG_IMAGE_WIDTH -> width = readIntValue(type, count, value, byteOrder);
 					case TAG_IMAGE_HEIGHT -> height = readIntValue(type, count, value, byteOrder);
 					case TAG_TILE_WIDTH -> tileWidth = readIntValue(type, count, value, byteOrder);
 					case TAG_TILE_HEIGHT -> tileHeight = readIntValue(type, count, value, byteOrder);
 					case TAG_COMPRESSION -> compression = readIntValue(type, count, value, byteOrder);
-					case TAG_TILE_OFFSETS -> tileOffsets = readLongArray(channel, value, count, byteOrder);
-					case TAG_TILE_BYTE_COUNTS -> tileByteCounts = readIntArray(channel, value, count, byteOrder);
-					case TAG_MODEL_PIXEL_SCALE -> pixelScale = readDoubleArray(channel, value, count, byteOrder);
-					case TAG_MODEL_TIEPOINT -> tiepoint = readDoubleArray(channel, value, count, byteOrder);
+					case TAG_TILE_OFFSETS -> tileOffsets = readLongArray(source, type, value, count, byteOrder);
+					case TAG_TILE_BYTE_COUNTS -> tileByteCounts = readIntArray(source, type, value, count, byteOrder);
+					case TAG_MODEL_PIXEL_SCALE -> pixelScale = readDoubleArray(source, value, count, byteOrder);
+					case TAG_MODEL_TIEPOINT -> tiepoint = readDoubleArray(source, value, count, byteOrder);
 					default -> {
 					}
 				}
 			}
+			long next = Integer.toUnsignedLong(entries.getInt());
 
-			if (compression != COMPRESSION_DEFLATE) {
-				throw new IOException("Unsupported TIFF compression " + compression);
-			}
-			if (width <= 0 || height <= 0 || tileWidth <= 0 || tileHeight <= 0) {
-				throw new IOException("Missing TIFF size tags");
-			}
-			if (tileOffsets == null || tileByteCounts == null) {
-				throw new IOException("Missing TIFF tile offsets");
-			}
-			if (pixelScale == null || pixelScale.length < 2 || tiepoint == null || tiepoint.length < 5) {
-				throw new IOException("Missing TIFF georeference tags");
-			}
-
-			return new GeoTiffTile(
-					path,
-					channel,
+			return new Ifd(
+					subfileType,
 					width,
 					height,
 					tileWidth,
 					tileHeight,
+					compression,
 					tileOffsets,
 					tileByteCounts,
-					pixelScale[0],
-					pixelScale[1],
-					tiepoint[3],
-					tiepoint[4]
+					pixelScale,
+					tiepoint,
+					next
 			);
 		}
 
@@ -627,40 +820,44 @@ public final class TellusLandCoverSource {
 			throw new IOException("Unsupported TIFF value type " + type);
 		}
 
-		private static long[] readLongArray(FileChannel channel, long offset, int count, ByteOrder order) throws IOException {
+		private static long[] readLongArray(TiffSource source, int type, int value, int count, ByteOrder order)
+				throws IOException {
 			if (count <= 0) {
 				return new long[0];
 			}
-			ByteBuffer buffer = ByteBuffer.allocate(count * 4).order(order);
-			readFully(channel, buffer, offset);
+			int size = type == TYPE_SHORT ? Short.BYTES : Integer.BYTES;
+			ByteBuffer buffer = ByteBuffer.allocate(count * size).order(order);
+			if (count * size <= Integer.BYTES) {
+				ByteBuffer inline = ByteBuffer.allocate(Integer.BYTES).order(order);
+				inline.putInt(value);
+				buffer.put(inline.array(), 0, count * size);
+			} else {
+				source.read(buffer, Integer.toUnsignedLong(value));
+			}
 			buffer.flip();
 			long[] values = new long[count];
 			for (int i = 0; i < count; i++) {
-				values[i] = Integer.toUnsignedLong(buffer.getInt());
+				values[i] = size == Short.BYTES ? Short.toUnsignedInt(buffer.getShort()) : Integer.toUnsignedLong(buffer.getInt());
 			}
 			return values;
 		}
 
-		private static int[] readIntArray(FileChannel channel, long offset, int count, ByteOrder order) throws IOException {
-			if (count <= 0) {
-				return new int[0];
+		private static int[] readIntArray(TiffSource source, int type, int value, int count, ByteOrder order)
+				throws IOException {
+			long[] values = readLongArray(source, type, value, count, order);
+			int[] ints = new int[values.length];
+			for (int i = 0; i < values.length; i++) {
+				ints[i] = (int) values[i];
 			}
-			ByteBuffer buffer = ByteBuffer.allocate(count * 4).order(order);
-			readFully(channel, buffer, offset);
-			buffer.flip();
-			int[] values = new int[count];
-			for (int i = 0; i < count; i++) {
-				values[i] = buffer.getInt();
-			}
-			return values;
+			return ints;
 		}
 
-		private static double[] readDoubleArray(FileChannel channel, long offset, int count, ByteOrder order) throws IOException {
+		private static double[] readDoubleArray(TiffSource source, long offset, int count, ByteOrder order) throws IOException {
 			if (count <= 0) {
 				return new double[0];
 			}
 			ByteBuffer buffer = ByteBuffer.allocate(count * 8).order(order);
-			readFully(channel, buffer, offset);
+			source.read(buffer, offset);
 			buffer.flip();
 			double[] values = new double[count];
 			for (int i = 0; i < count; i++) {
@@ -669,36 +866,300 @@ public final class TellusLandCoverSource {
 			return values;
 		}
 
-		private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
-			long position = offset;
-			while (buffer.hasRemaining()) {
-				int read = channel.read(buffer, position);
-				if (read < 0) {
-					throw new EOFException("Unexpected end of file");
+		private static void inflate(Inflater inflater, byte[] compressed, int length, byte[] output, int expectedSize)
+				throws IOException {
+			inflater.reset();
+			inflater.setInput(compressed, 0, length);
+			int offset = 0;
+			try {
+				while (offset < expectedSize) {
+					int read = inflater.inflate(output, offset, expectedSize - offset);
+					if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+					offset += read;
 				}
-				position += read;
+			} catch (DataFormatException e) {
+				throw new IOException("Invalid deflate data", e);
+			}
+			if (offset != expectedSize) {
+				throw new IOException("Unexpected inflated data length");
 			}
 		}
 
-		private static void readFully(FileChannel channel, byte[] dest, long offset) throws IOException {
-			readFully(channel, ByteBuffer.wrap(dest), offset);
+		private record Ifd(
+				int subfileType,
+				int width,
+				int height,
+				int tileWidth,
+				int tileHeight,
+				int compression,
+				long[] tileOffsets,
+				int[] tileByteCounts,
+				double[] pixelScale,
+				double[] tiepoint,
+				long next
+		) {
+			boolean hasTiles() {
+				return this.width > 0 && this.height > 0 && this.tileWidth > 0 && this.tileHeight > 0;
+			}
+
+			boolean isOverviewOf(Ifd base, int compression, int maskFlag) {
+				if ((this.subfileType & maskFlag) != 0 || this.compression != compression || !hasTiles()) {
+					return false;
+				}
+				if (this.tileOffsets == null || this.tileByteCounts == null) {
+					return false;
+				}
+				int tiles = ((this.width + this.tileWidth - 1) / this.tileWidth)
+						* ((this.height + this.tileHeight - 1) / this.tileHeight);
+				if (this.tileOffsets.length < tiles || this.tileByteCounts.length < tiles) {
+					return false;
+				}
+				return this.width < base.width && this.height < base.height;
+			}
 		}
 
-		private static byte[] inflate(byte[] compressed, int expectedSize) throws IOException {
-			byte[] output = new byte[expectedSize];
-			try (InflaterInputStream inflater = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
-				int offset = 0;
-				while (offset < expectedSize) {
-					int read = inflater.read(output, offset, expectedSize - offset);
-					if (read < 0) {
-						break;
+		private static final class Level {
+			private static final Level EMPTY = new Level();
+			private static final Cache<DecodedTileKey, DecodedTile> DECODED_TILES = CacheBuilder.newBuilder()
+					.maximumWeight(MAX_TILE_CACHE_BYTES)
+					.weigher((DecodedTileKey key, DecodedTile tile) -> tile.data().length + TILE_OVERHEAD_BYTES)
+					.concurrencyLevel(Runtime.getRuntime().availableProcessors())
+					.build();
+
+			private final Path path;
+			private final TiffSource source;
+			private final int width;
+			private final int height;
+			private final int tileWidth;
+			private final int tileHeight;
+			private final int tilesPerRow;
+			private final long[] tileOffsets;
+			private final int[] tileByteCounts;
+			private final double pixelScaleX;
+			private final double pixelScaleY;
+			private final double tieLon;
+			private final double tieLat;
+			private final double factor;
+			private final DecodedTileFile decoded;
+
+			private Level() {
+				this.path = null;
+				this.source = null;
+				this.width = 0;
+				this.height = 0;
+				this.tileWidth = 0;
+				this.tileHeight = 0;
+				this.tilesPerRow = 0;
+				this.tileOffsets = null;
+				this.tileByteCounts = null;
+				this.pixelScaleX = 0.0;
+				this.pixelScaleY = 0.0;
+				this.tieLon = 0.0;
+				this.tieLat = 0.0;
+				this.factor = 1.0;
+				this.decoded = null;
+			}
+
+			private Level(
+					Path path,
+					TiffSource source,
+					int width,
+					int height,
+					int tileWidth,
+					int tileHeight,
+					long[] tileOffsets,
+					int[] tileByteCounts,
+					double pixelScaleX,
+					double pixelScaleY,
+					double tieLon,
+					double tieLat,
+					double factor,
+					DecodedTileFile decoded
+			) {
+				this.path = path;
+				this.source = source;
+				this.width = width;
+				this.height = height;
+				this.tileWidth = tileWidth;
+				this.tileHeight = tileHeight;
+				this.tilesPerRow = (int) Math.ceil(width / (double) tileWidth);
+				this.tileOffsets = tileOffsets;
+				this.tileByteCounts = tileByteCounts;
+				this.pixelScaleX = pixelScaleX;
+				this.pixelScaleY = pixelScaleY;
+				this.tieLon = tieLon;
+				this.tieLat = tieLat;
+				this.factor = factor;
+				this.decoded = decoded;
+			}
+
+			int sample(double lon, double lat) {
+				Pixel pixel = toPixel(lon, lat);
+				if (pixel == null) {
+					return 0;
+				}
+				return sampleValue(pixel.x, pixel.y);
+			}
+
+			Pixel toPixel(double lon, double lat) {
+				if (this == EMPTY) {
+					return null;
+				}
+				int pixelX = pixelX(lon);
+				int pixelY = pixelY(lat);
+				if (pixelX < 0 || pixelY < 0 || pixelX >= this.width || pixelY >= this.height) {
+					return null;
+				}
+				return new Pixel(pixelX, pixelY);
+			}
+
+			int pixelX(double lon) {
+				return (int) Math.floor((lon - this.tieLon) / this.pixelScaleX);
+			}
+
+			int pixelY(double lat) {
+				return (int) Math.floor((this.tieLat - lat) / this.pixelScaleY);
+			}
+
+			int sampleValue(int pixelX, int pixelY) {
+				return sampleValue(pixelX, pixelY, null);
+			}
+
+			int sampleValue(int pixelX, int pixelY, CoverCursor cursor) {
+				if (this == EMPTY || pixelX < 0 || pixelY < 0 || pixelX >= this.width || pixelY >= this.height) {
+					return 0;
+				}
+				int tileX = pixelX / this.tileWidth;
+				int tileY = pixelY / this.tileHeight;
+				int tileIndex = tileY * this.tilesPerRow + tileX;
+
+				int localX = pixelX - tileX * this.tileWidth;
+				int localY = pixelY - tileY * this.tileHeight;
+				if (cursor != null && cursor.tileLevel == this && cursor.tileIndex == tileIndex) {
+					return cursor.tile.get(localX + localY * this.tileWidth);
+				}
+				if (this.decoded != null) {
+					int value = this.decoded.get(tileIndex, localX + localY * this.tileWidth);
+					if (value >= 0) {
+						return value;
 					}
-					offset += read;
 				}
-				if (offset != expectedSize) {
-					throw new IOException("Unexpected inflated data length");
+
+				DecodedTile tile;
+				try {
+					tile = getTile(tileIndex);
+				} catch (ClosedByInterruptException e) {
+					Thread.currentThread().interrupt();
+					return 0;
+				} catch (IOException e) {
+					Tellus.LOGGER.warn("Failed to read land cover tile {} in {}", tileIndex, this.path, e);
+					return 0;
+				}
+
+				if (cursor != null) {
+					cursor.tileLevel = this;
+					cursor.tileIndex = tileIndex;
+					cursor.tile = tile;
+				}
+				return tile.get(localX + localY * this.tileWidth);
+			}
+
+			boolean isInside(int pixelX, int pixelY) {
+				return pixelX >= 0 && pixelY >= 0 && pixelX < this.width && pixelY < this.height;
+			}
+
+			boolean isNeighborhoodInBounds(int pixelX, int pixelY, int radius) {
+				return pixelX - radius >= 0
+						&& pixelY - radius >= 0
+						&& pixelX + radius < this.width
+						&& pixelY + radius < this.height;
+			}
+
+			double lonForPixel(int pixelX) {
+				return this.tieLon + (pixelX + 0.5) * this.pixelScaleX;
+			}
+
+			double latForPixel(int pixelY) {
+				return this.tieLat - (pixelY + 0.5) * this.pixelScaleY;
+			}
+
+			void collectPending(double west, double north, double east, double south, List<DecodedTileKey> pending) {
+				if (this == EMPTY) {
+					return;
+				}
+				int minPixelX = Math.max(0, pixelX(west));
+				int maxPixelX = Math.min(this.width - 1, pixelX(east));
+				int minPixelY = Math.max(0, pixelY(north));
+				int maxPixelY = Math.min(this.height - 1, pixelY(south));
+				for (int tileY = minPixelY / this.tileHeight; tileY <= maxPixelY / this.tileHeight; tileY++) {
+					for (int tileX = minPixelX / this.tileWidth; tileX <= maxPixelX / this.tileWidth; tileX++) {
+						int tileIndex = tileY * this.tilesPerRow + tileX;
+						if (this.decoded != null && this.decoded.get(tileIndex, 0) >= 0) {
+							continue;
+						}
+						DecodedTileKey key = new DecodedTileKey(this, tileIndex);
+						if (DECODED_TILES.getIfPresent(key) == null) {
+							pending.add(key);
+						}
+					}
+				}
+			}
+
+			void decode(int tileIndex) {
+				try {
+					getTile(tileIndex);
+				} catch (ClosedByInterruptException e) {
+					Thread.currentThread().interrupt();
+				} catch (IOException e) {
+					Tellus.LOGGER.debug("Failed to decode land cover tile {} in {}", tileIndex, this.path, e);
+				}
+			}
+
+			void invalidate() {
+				DECODED_TILES.asMap().keySet().removeIf(key -> key.level == this);
+			}
+
+			private DecodedTile getTile(int tileIndex) throws IOException {
+				try {
+					return DECODED_TILES.get(new DecodedTileKey(this, tileIndex), () -> readTile(tileIndex));
+				} catch (ExecutionException | UncheckedExecutionException e) {
+					if (e.getCause() instanceof IOException cause) {
+						throw cause;
+					}
+					throw new IOException("Failed to decode land cover tile " + tileIndex, e.getCause());
+				}
+			}
+
+			private DecodedTile readTile(int tileIndex) throws IOException {
+				long offset = this.tileOffsets[tileIndex];
+				int length = this.tileByteCounts[tileIndex];
+				int expectedSize = this.tileWidth * this.tileHeight;
+				InflateScratch scratch = INFLATE_SCRATCH.get();
+				byte[] compressed = scratch.input(length);
+				this.source.read(ByteBuffer.wrap(compressed, 0, length), offset);
+				byte[] classes = scratch.output(expectedSize);
+				inflate(scratch.inflater, compressed, length, classes, expectedSize);
+				byte[] packed = CoverPalette.pack(classes, expectedSize);
+				if (packed == null) {
+					return new DecodedTile(Arrays.copyOf(classes, expectedSize), false);
+				}
+				if (this.decoded != null) {
+					this.decoded.put(tileIndex, packed);
+				}
+				return new DecodedTile(packed, true);
+			}
+
+			void closeDecoded() {
+				if (this.decoded == null) {
+					return;
+				}
+				try {
+					this.decoded.close();
+				} catch (IOException e) {
+					Tellus.LOGGER.warn("Failed to close decoded land cover sidecar for {}", this.path, e);
 				}
-				return output;
 			}
 		}
 	}
@@ -706,40 +1167,141 @@ public final class TellusLandCoverSource {
 	private record Pixel(int x, int y) {
 	}
 
+	private final class CoverCursor {
+		private final double overviewFactor;
+		private int keyLat = Integer.MIN_VALUE;
+		private int keyLon = Integer.MIN_VALUE;
+		private GeoTiffTile.Level level;
+		private GeoTiffTile.Level tileLevel;
+		private int tileIndex = -1;
+		private DecodedTile tile;
+
+		private CoverCursor(double overviewFactor) {
+			this.overviewFactor = overviewFactor;
+		}
+
+		int sample(double lon, double lat) {
+			GeoTiffTile.Level level = level(lon, lat);
+			if (level == null || level == GeoTiffTile.Level.EMPTY) {
+				return 0;
+			}
+			return level.sampleValue(level.pixelX(lon), level.pixelY(lat), this);
+		}
+
+		GeoTiffTile.Level level(double lon, double lat) {
+			if (lat < MIN_LAT || lat > MAX_LAT || lon < MIN_LON || lon > MAX_LON) {
+				return null;
+			}
+			int tileLat = (int) Math.floor(lat / TILE_DEGREES) * TILE_DEGREES;
+			int tileLon = (int) Math.floor(lon / TILE_DEGREES) * TILE_DEGREES;
+			if (tileLat != this.keyLat || tileLon != this.keyLon || this.level == null) {
+				this.level = getTile(new TileKey(tileLat, tileLon)).level(this.overviewFactor);
+				this.keyLat = tileLat;
+				this.keyLon = tileLon;
+			}
+			return this.level;
+		}
+	}
+
+	private static final class DecodeTask extends RecursiveAction {
+		private final List<DecodedTileKey> tiles;
+		private final int start;
+		private final int end;
+
+		private DecodeTask(List<DecodedTileKey> tiles, int start, int end) {
+			this.tiles = tiles;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.end - this.start <= 1) {
+				for (int i = this.start; i < this.end; i++) {
+					DecodedTileKey key = this.tiles.get(i);
+					key.level().decode(key.tileIndex());
+				}
+				return;
+			}
+			int middle = (this.start + this.end) >>> 1;
+			invokeAll(
+					new DecodeTask(this.tiles, this.start, middle),
+					new DecodeTask(this.tiles, middle, this.end)
+			);
+		}
+	}
+
+	private record DecodedTileKey(GeoTiffTile.Level level, int tileIndex) {
+	}
+
+	private record DecodedTile(byte[] data, boolean packed) {
+		int get(int pixelIndex) {
+			if (this.packed) {
+				return CoverPalette.unpack(this.data[pixelIndex >>> 1], pixelIndex);
+			}
+			return Byte.toUnsignedInt(this.data[pixelIndex]);
+		}
+	}
+
+	private static final class InflateScratch {
+		private final Inflater inflater = new Inflater();
+		private byte[] input = new byte[0];
+		private byte[] output = new byte[0];
+
+		private byte[] input(int size) {
+			if (this.input.length < size) {
+				this.input = new byte[size];
+			}
+			return this.input;
+		}
+
+		private byte[] output(int size) {
+			if (this.output.length < size) {
+				this.output = new byte[size];
+			}
+			return this.output;
+		}
+	}
+
 	private static final class CoverSmoothScratch {
-		private final int[] counts = new int[256];
-		private final int[] used = new int[256];
-		private int usedCount;
+		private final int[] counts = new int[CoverPalette.SIZE];
 
 		private void reset() {
-			for (int i = 0; i < this.usedCount; i++) {
-				this.counts[this.used[i]] = 0;
-			}
-			this.usedCount = 0;
+			Arrays.fill(this.counts, 0);
 		}
 
 		private void add(int value) {
-			if (this.counts[value] == 0) {
-				this.used[this.usedCount++] = value;
+			int index = CoverPalette.index(value);
+			if (index >= 0) {
+				this.counts[index]++;
+			}
+		}
+
+		private void addSmoothed(int value) {
+			if (value != WATER_CLASS && value != NO_DATA_CLASS) {
+				add(value);
+			}
+		}
+
+		private void removeSmoothed(int value) {
+			int index = CoverPalette.index(value);
+			if (index >= 0 && value != WATER_CLASS && value != NO_DATA_CLASS) {
+				this.counts[index]--;
 			}
-			this.counts[value]++;
 		}
 
 		private int pickMajority(int centerValue) {
-			if (this.usedCount == 0) {
-				return centerValue;
-			}
-			int bestValue = centerValue;
-			int bestCount = -1;
-			for (int i = 0; i < this.usedCount; i++) {
-				int value = this.used[i];
-				int count = this.counts[value];
-				if (count > bestCount || (count == bestCount && value == centerValue)) {
+			int centerIndex = CoverPalette.index(centerValue);
+			int bestIndex = -1;
+			int bestCount = 0;
+			for (int i = 0; i < CoverPalette.SIZE; i++) {
+				int count = this.counts[i];
+				if (count > bestCount || (count == bestCount && count > 0 && i == centerIndex)) {
 					bestCount = count;
-					bestValue = value;
+					bestIndex = i;
 				}
 			}
-			return bestValue;
+			return bestIndex < 0 ? centerValue : CoverPalette.coverClass(bestIndex);
 		}
 	}
 }
@@ -0,0 +1,65 @@
+package com.yucareux.tellus.world.data.cover;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+interface TiffSource {
+	void read(ByteBuffer buffer, long offset) throws IOException;
+
+	void close() throws IOException;
+
+	static TiffSource open(Path path) throws IOException {
+		return new Local(path, FileChannel.open(path, StandardOpenOption.READ));
+	}
+
+	static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+		long position = offset;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException("Unexpected end of file");
+			}
+			position += read;
+		}
+	}
+
+	static void writeFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+		long position = offset;
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	final class Local implements TiffSource {
+		private final Path path;
+		private final FileChannel channel;
+
+		private Local(Path path, FileChannel channel) {
+			this.path = path;
+			this.channel = channel;
+		}
+
+		@Override
+		public void read(ByteBuffer buffer, long offset) throws IOException {
+			int start = buffer.position();
+			try {
+				readFully(this.channel, buffer, offset);
+			} catch (ClosedChannelException e) {
+				buffer.position(start);
+				try (FileChannel reopened = FileChannel.open(this.path, StandardOpenOption.READ)) {
+					readFully(reopened, buffer, offset);
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+		}
+	}
+}
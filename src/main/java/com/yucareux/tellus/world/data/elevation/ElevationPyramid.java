@@ -0,0 +1,53 @@
+package com.yucareux.tellus.world.data.elevation;
+
+final class ElevationPyramid {
+	private ElevationPyramid() {
+	}
+
+	static ShortRaster downsample(
+			ShortRaster northWest,
+			ShortRaster northEast,
+			ShortRaster southWest,
+			ShortRaster southEast,
+			TellusElevationSource.Reduction reduction
+	) {
+		int width = northWest.width();
+		int height = northWest.height();
+		if ((width & 1) != 0 || (height & 1) != 0) {
+			throw new IllegalArgumentException("Pyramid tiles must have even dimensions");
+		}
+		ShortRaster parent = ShortRaster.create(width, height);
+		int halfWidth = width >> 1;
+		int halfHeight = height >> 1;
+		reduceQuadrant(northWest, parent, 0, 0, reduction);
+		reduceQuadrant(northEast, parent, halfWidth, 0, reduction);
+		reduceQuadrant(southWest, parent, 0, halfHeight, reduction);
+		reduceQuadrant(southEast, parent, halfWidth, halfHeight, reduction);
+		parent.replicateHalo();
+		return parent;
+	}
+
+	private static void reduceQuadrant(ShortRaster child, ShortRaster parent, int offsetX, int offsetY, TellusElevationSource.Reduction reduction) {
+		if (child.width() != parent.width() || child.height() != parent.height()) {
+			throw new IllegalArgumentException("Pyramid tiles must share dimensions");
+		}
+		int halfWidth = parent.width() >> 1;
+		int halfHeight = parent.height() >> 1;
+		for (int y = 0; y < halfHeight; y++) {
+			int childY = y << 1;
+			for (int x = 0; x < halfWidth; x++) {
+				int childX = x << 1;
+				int v00 = child.get(childX, childY);
+				int v10 = child.get(childX + 1, childY);
+				int v01 = child.get(childX, childY + 1);
+				int v11 = child.get(childX + 1, childY + 1);
+				int value = switch (reduction) {
+					case MIN -> Math.min(Math.min(v00, v10), Math.min(v01, v11));
+					case MAX -> Math.max(Math.max(v00, v10), Math.max(v01, v11));
+					case MEAN -> Math.floorDiv(v00 + v10 + v01 + v11 + 2, 4);
+				};
+				parent.set(offsetX + x, offsetY + y, (short) value);
+			}
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package com.yucareux.tellus.world.data.elevation;
+
+import com.yucareux.tellus.Tellus;
+import com.yucareux.tellus.world.data.cache.TileArchive;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.jspecify.annotations.Nullable;
+
+final class ElevationTileStore {
+	private static final int MAGIC = 0x54454C45;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	private final Path root;
+	private volatile @Nullable TileArchive archive;
+	private volatile boolean archiveUnavailable;
+
+	ElevationTileStore(Path root) {
+		this.root = root;
+	}
+
+	boolean contains(int zoom, int x, int y) {
+		TileArchive archive = archive();
+		if (archive != null && archive.contains(zoom, x, y)) {
+			return true;
+		}
+		return Files.exists(legacyPath(zoom, x, y));
+	}
+
+	@Nullable ShortRaster read(int zoom, int x, int y) throws IOException {
+		TileArchive archive = archive();
+		if (archive != null) {
+			ByteBuffer payload = archive.read(zoom, x, y);
+			if (payload != null) {
+				return decode(payload, zoom, x, y);
+			}
+		}
+		return migrateLegacy(zoom, x, y);
+	}
+
+	void write(int zoom, int x, int y, ShortRaster raster) {
+		TileArchive archive = archive();
+		if (archive == null) {
+			return;
+		}
+		try {
+			archive.write(zoom, x, y, encode(raster));
+		} catch (IOException e) {
+			Tellus.LOGGER.warn("Failed to store decoded elevation tile {}/{}/{}", zoom, x, y, e);
+		}
+	}
+
+	void delete(int zoom, int x, int y) {
+		TileArchive archive = archive();
+		try {
+			if (archive != null) {
+				archive.delete(zoom, x, y);
+			}
+			Files.deleteIfExists(legacyPath(zoom, x, y));
+		} catch (IOException e) {
+			Tellus.LOGGER.debug("Failed to delete decoded elevation tile {}/{}/{}", zoom, x, y, e);
+		}
+	}
+
+	private @Nullable ShortRaster migrateLegacy(int zoom, int x, int y) throws IOException {
+		Path path = legacyPath(zoom, x, y);
+		if (!Files.exists(path)) {
+			return null;
+		}
+		ShortRaster raster = decode(ByteBuffer.wrap(Files.readAllBytes(path)), zoom, x, y);
+		TileArchive archive = archive();
+		if (archive != null) {
+			try {
+				archive.write(zoom, x, y, encode(raster));
+				Files.deleteIfExists(path);
+			} catch (IOException e) {
+				Tellus.LOGGER.debug("Failed to migrate decoded elevation tile {}", path, e);
+			}
+		}
+		return raster;
+	}
+
+	private static ShortRaster decode(ByteBuffer payload, int zoom, int x, int y) throws IOException {
+		ByteBuffer buffer = payload.order(BYTE_ORDER);
+		int size = buffer.remaining();
+		if (size < HEADER_SIZE) {
+			throw new IOException("Truncated elevation tile " + zoom + "/" + x + "/" + y);
+		}
+		int start = buffer.position();
+		int magic = buffer.getInt(start);
+		int version = buffer.getInt(start + 4);
+		int width = buffer.getInt(start + 8);
+		int height = buffer.getInt(start + 12);
+		if (magic != MAGIC || version != VERSION) {
+			throw new IOException("Invalid elevation tile header " + zoom + "/" + x + "/" + y);
+		}
+		if (width <= 0 || height <= 0 || size != HEADER_SIZE + (long) width * height * Short.BYTES) {
+			throw new IOException("Invalid elevation tile size " + zoom + "/" + x + "/" + y);
+		}
+		buffer.position(start + HEADER_SIZE);
+		return ShortRaster.read(width, height, buffer.asShortBuffer());
+	}
+
+	private static ByteBuffer encode(ShortRaster raster) {
+		int width = raster.width();
+		int height = raster.height();
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + width * height * Short.BYTES).order(BYTE_ORDER);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(width);
+		buffer.putInt(height);
+		raster.copyTo(buffer.asShortBuffer());
+		buffer.rewind();
+		return buffer;
+	}
+
+	private @Nullable TileArchive archive() {
+		TileArchive archive = this.archive;
+		if (archive != null || this.archiveUnavailable) {
+			return archive;
+		}
+		synchronized (this) {
+			if (this.archive == null && !this.archiveUnavailable) {
+				try {
+					this.archive = TileArchive.open(this.root);
+				} catch (IOException e) {
+					this.archiveUnavailable = true;
+					Tellus.LOGGER.warn("Failed to open decoded elevation archive {}", this.root, e);
+				}
+			}
+			return this.archive;
+		}
+	}
+
+	private Path legacyPath(int zoom, int x, int y) {
+		return this.root.resolve(zoom + "/" + x + "/" + y + ".bin");
+	}
+}
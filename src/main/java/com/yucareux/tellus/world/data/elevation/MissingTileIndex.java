@@ -0,0 +1,196 @@
+package com.yucareux.tellus.world.data.elevation;
+
+import com.yucareux.tellus.Tellus;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+final class MissingTileIndex {
+	private static final int BLOCK_SHIFT = 6;
+	private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+	private static final int BLOCK_WORDS = (1 << (BLOCK_SHIFT * 2)) / Long.SIZE;
+	private static final int RECORD_SIZE = 16;
+	private static final String FILE_SUFFIX = ".missing";
+
+	private final Path root;
+	private final long ttlMillis;
+	private final ConcurrentMap<Long, Block> blocks = new ConcurrentHashMap<>();
+
+	MissingTileIndex(Path root, long ttlMillis) {
+		this.root = root;
+		this.ttlMillis = ttlMillis;
+		load();
+	}
+
+	boolean isMissing(int zoom, int x, int y) {
+		Block block = this.blocks.get(blockKey(zoom, x, y));
+		if (block == null) {
+			return false;
+		}
+		if (isExpired(block, System.currentTimeMillis())) {
+			this.blocks.remove(blockKey(zoom, x, y), block);
+			return false;
+		}
+		return block.get(bitIndex(x, y));
+	}
+
+	void markMissing(int zoom, int x, int y) {
+		long now = System.currentTimeMillis();
+		Block block = this.blocks.compute(
+				blockKey(zoom, x, y),
+				(key, existing) -> existing == null || isExpired(existing, now) ? new Block(now) : existing
+		);
+		block.set(bitIndex(x, y));
+		append(zoom, x, y, now);
+	}
+
+	private boolean isExpired(Block block, long now) {
+		return now - block.createdAt > this.ttlMillis;
+	}
+
+	private void append(int zoom, int x, int y, long timestamp) {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+		record.putInt(x).putInt(y).putLong(timestamp).flip();
+		Path path = zoomPath(zoom);
+		synchronized (this) {
+			try {
+				Files.createDirectories(this.root);
+				try (FileChannel channel = FileChannel.open(
+						path,
+						StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE,
+						StandardOpenOption.APPEND
+				)) {
+					while (record.hasRemaining()) {
+						channel.write(record);
+					}
+				}
+			} catch (IOException e) {
+				Tellus.LOGGER.debug("Failed to persist missing elevation tile {}/{}/{}", zoom, x, y, e);
+			}
+		}
+	}
+
+	private void load() {
+		if (!Files.isDirectory(this.root)) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.root, "*" + FILE_SUFFIX)) {
+			for (Path path : files) {
+				String name = path.getFileName().toString();
+				int zoom;
+				try {
+					zoom = Integer.parseInt(name.substring(0, name.length() - FILE_SUFFIX.length()));
+				} catch (NumberFormatException e) {
+					continue;
+				}
+				loadZoom(path, zoom, now);
+			}
+		} catch (IOException e) {
+			Tellus.LOGGER.warn("Failed to load missing elevation tile index {}", this.root, e);
+		}
+	}
+
+	private void loadZoom(Path path, int zoom, long now) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		List<long[]> live = new ArrayList<>();
+		int expired = 0;
+		while (buffer.remaining() >= RECORD_SIZE) {
+			int x = buffer.getInt();
+			int y = buffer.getInt();
+			long timestamp = buffer.getLong();
+			if (now - timestamp > this.ttlMillis) {
+				expired++;
+				continue;
+			}
+			live.add(new long[] { x, y, timestamp });
+			Block block = this.blocks.compute(
+					blockKey(zoom, x, y),
+					(key, existing) -> existing == null || existing.createdAt > timestamp ? copyOf(existing, timestamp) : existing
+			);
+			block.set(bitIndex(x, y));
+		}
+		if (expired > 0 || buffer.hasRemaining()) {
+			compact(path, live);
+		}
+	}
+
+	private static Block copyOf(Block existing, long createdAt) {
+		Block block = new Block(createdAt);
+		if (existing != null) {
+			for (int i = 0; i < BLOCK_WORDS; i++) {
+				block.bits.set(i, existing.bits.get(i));
+			}
+		}
+		return block;
+	}
+
+	private void compact(Path path, List<long[]> live) {
+		ByteBuffer buffer = ByteBuffer.allocate(live.size() * RECORD_SIZE);
+		for (long[] record : live) {
+			buffer.putInt((int) record[0]).putInt((int) record[1]).putLong(record[2]);
+		}
+		buffer.flip();
+		Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(
+					tempPath,
+					StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING
+			)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Tellus.LOGGER.debug("Failed to compact missing elevation tile index {}", path, e);
+		}
+	}
+
+	private Path zoomPath(int zoom) {
+		return this.root.resolve(zoom + FILE_SUFFIX);
+	}
+
+	private static long blockKey(int zoom, int x, int y) {
+		return ((long) zoom << 58) | ((long) (x >>> BLOCK_SHIFT) << 29) | (y >>> BLOCK_SHIFT);
+	}
+
+	private static int bitIndex(int x, int y) {
+		return ((y & BLOCK_MASK) << BLOCK_SHIFT) | (x & BLOCK_MASK);
+	}
+
+	private static final class Block {
+		private final long createdAt;
+		private final AtomicLongArray bits = new AtomicLongArray(BLOCK_WORDS);
+
+		private Block(long createdAt) {
+			this.createdAt = createdAt;
+		}
+
+		private boolean get(int index) {
+			return (this.bits.get(index >>> 6) & (1L << index)) != 0;
+		}
+
+		private void set(int index) {
+			int word = index >>> 6;
+			long mask = 1L << index;
+			long current;
+			do {
+				current = this.bits.get(word);
+			} while ((current & mask) == 0 && !this.bits.compareAndSet(word, current, current | mask));
+		}
+	}
+}
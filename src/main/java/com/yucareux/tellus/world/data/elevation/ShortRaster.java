@@ -1,27 +1,51 @@
 package com.yucareux.tellus.world.data.elevation;
 
-import java.util.Arrays;
+import java.nio.ShortBuffer;
+import org.jspecify.annotations.Nullable;
 
 final class ShortRaster {
+	static final int HALO_RIGHT = 1;
+	static final int HALO_BOTTOM = 1 << 1;
+	static final int HALO_CORNER = 1 << 2;
+	static final int HALO_ALL = HALO_RIGHT | HALO_BOTTOM | HALO_CORNER;
+
+	private static final int OBJECT_OVERHEAD = 64;
+	private static final int BYTE_RANGE = 0xFF;
+	private static final double GRADIENT_STEPS = 32.0;
+	private static volatile byte[] sharedZeros = new byte[0];
+
 	private final int width;
 	private final int height;
-	private final short[] data;
+	private final int stride;
+	private volatile Storage storage;
+	private volatile byte @Nullable [] gradient;
+	private double gradientScale;
+	private double @Nullable [] gradientStretch;
+	private volatile int haloMask;
 
-	private ShortRaster(int width, int height, short[] data) {
+	private ShortRaster(int width, int height) {
 		this.width = width;
 		this.height = height;
-		this.data = data;
+		this.stride = width + 1;
+		this.storage = Storage.wide(new short[(width + 1) * (height + 1)]);
 	}
 
 	static ShortRaster create(int width, int height) {
-		return new ShortRaster(width, height, new short[width * height]);
+		return new ShortRaster(width, height);
 	}
 
-	static ShortRaster wrap(int width, int height, short[] data) {
-		if (data.length != width * height) {
+	static ShortRaster read(int width, int height, ShortBuffer buffer) {
+		if (buffer.remaining() < width * height) {
 			throw new IllegalArgumentException("Invalid raster buffer");
 		}
-		return new ShortRaster(width, height, data);
+		ShortRaster raster = new ShortRaster(width, height);
+		short[] data = raster.storage.shorts;
+		for (int y = 0; y < height; y++) {
+			buffer.get(data, y * raster.stride, width);
+		}
+		raster.replicateHalo();
+		raster.compact();
+		return raster;
 	}
 
 	int width() {
@@ -32,15 +56,358 @@ final class ShortRaster {
 		return this.height;
 	}
 
+	int sizeBytes() {
+		Storage storage = this.storage;
+		byte[] gradient = this.gradient;
+		int size = OBJECT_OVERHEAD + (gradient != null ? gradient.length : 0);
+		if (storage.shorts != null) {
+			return size + storage.shorts.length * Short.BYTES;
+		}
+		return storage.shared ? size : size + storage.bytes.length;
+	}
+
 	short get(int x, int y) {
-		return this.data[x + y * this.width];
+		return this.storage.get(x + y * this.stride);
 	}
 
 	void set(int x, int y, short value) {
-		this.data[x + y * this.width] = value;
+		store(x + y * this.stride, value);
+	}
+
+	synchronized void fill(short value) {
+		this.storage = Storage.constant(value, zeros(this.stride * (this.height + 1)));
+	}
+
+	void copyTo(ShortBuffer buffer) {
+		Storage storage = this.storage;
+		if (storage.shorts != null) {
+			for (int y = 0; y < this.height; y++) {
+				buffer.put(storage.shorts, y * this.stride, this.width);
+			}
+			return;
+		}
+		for (int y = 0; y < this.height; y++) {
+			int row = y * this.stride;
+			for (int x = 0; x < this.width; x++) {
+				buffer.put(storage.get(row + x));
+			}
+		}
+	}
+
+	double sampleBilinear(int x0, int y0, double dx, double dy) {
+		Storage storage = this.storage;
+		int index = x0 + y0 * this.stride;
+		int below = index + this.stride;
+		double v00;
+		double v10;
+		double v01;
+		double v11;
+		short[] shorts = storage.shorts;
+		if (shorts != null) {
+			v00 = shorts[index];
+			v10 = shorts[index + 1];
+			v01 = shorts[below];
+			v11 = shorts[below + 1];
+		} else {
+			byte[] bytes = storage.bytes;
+			int base = storage.base;
+			v00 = base + (bytes[index] & BYTE_RANGE);
+			v10 = base + (bytes[index + 1] & BYTE_RANGE);
+			v01 = base + (bytes[below] & BYTE_RANGE);
+			v11 = base + (bytes[below + 1] & BYTE_RANGE);
+		}
+		double lerpX0 = v00 + dx * (v10 - v00);
+		double lerpX1 = v01 + dx * (v11 - v01);
+		return lerpX0 + dy * (lerpX1 - lerpX0);
+	}
+
+	double sampleGradient(int x0, int y0, double dx, double dy) {
+		byte[] gradient = this.gradient;
+		if (gradient == null) {
+			return 0.0;
+		}
+		int index = x0 + y0 * this.stride;
+		int below = index + this.stride;
+		double v00 = gradient[index] & BYTE_RANGE;
+		double v10 = gradient[index + 1] & BYTE_RANGE;
+		double v01 = gradient[below] & BYTE_RANGE;
+		double v11 = gradient[below + 1] & BYTE_RANGE;
+		double lerpX0 = v00 + dx * (v10 - v00);
+		double lerpX1 = v01 + dx * (v11 - v01);
+		return (lerpX0 + dy * (lerpX1 - lerpX0)) / GRADIENT_STEPS;
+	}
+
+	synchronized void computeGradient(double pixelMeters, double[] rowStretch) {
+		this.gradientScale = GRADIENT_STEPS / pixelMeters;
+		this.gradientStretch = rowStretch;
+		Storage storage = this.storage;
+		if (storage.shared) {
+			this.gradient = null;
+			return;
+		}
+		int w = this.width;
+		int h = this.height;
+		int stride = this.stride;
+		byte[] gradient = new byte[stride * (h + 1)];
+		for (int y = 0; y < h; y++) {
+			int row = y * stride;
+			for (int x = 0; x < w; x++) {
+				gradient[row + x] = gradientAt(storage, x, y);
+			}
+			gradient[row + w] = gradient[row + w - 1];
+		}
+		System.arraycopy(gradient, (h - 1) * stride, gradient, h * stride, stride);
+		this.gradient = gradient;
+	}
+
+	private void refreshGradientColumn() {
+		byte[] current = this.gradient;
+		if (current == null) {
+			refreshGradient();
+			return;
+		}
+		int w = this.width;
+		int h = this.height;
+		int stride = this.stride;
+		byte[] gradient = current.clone();
+		Storage storage = this.storage;
+		for (int y = 0; y < h; y++) {
+			int index = y * stride + w - 1;
+			gradient[index] = gradientAt(storage, w - 1, y);
+			gradient[index + 1] = gradient[index];
+		}
+		int last = (h - 1) * stride + w - 1;
+		gradient[last + stride] = gradient[last];
+		gradient[last + stride + 1] = gradient[last];
+		this.gradient = gradient;
+	}
+
+	private void refreshGradientRow() {
+		byte[] current = this.gradient;
+		if (current == null) {
+			refreshGradient();
+			return;
+		}
+		int w = this.width;
+		int h = this.height;
+		int stride = this.stride;
+		byte[] gradient = current.clone();
+		Storage storage = this.storage;
+		int row = (h - 1) * stride;
+		for (int x = 0; x < w; x++) {
+			gradient[row + x] = gradientAt(storage, x, h - 1);
+		}
+		gradient[row + w] = gradient[row + w - 1];
+		System.arraycopy(gradient, row, gradient, row + stride, stride);
+		this.gradient = gradient;
+	}
+
+	private void refreshGradient() {
+		double[] stretch = this.gradientStretch;
+		if (stretch != null && !this.storage.shared) {
+			computeGradient(GRADIENT_STEPS / this.gradientScale, stretch);
+		}
+	}
+
+	private byte gradientAt(Storage storage, int x, int y) {
+		int stride = this.stride;
+		int index = x + y * stride;
+		int center = storage.get(index);
+		int left = storage.get(x > 0 ? index - 1 : index);
+		int above = y > 0 ? index - stride : index;
+		int horizontal = Math.max(Math.abs(storage.get(index + 1) - center), Math.abs(left - center));
+		int vertical = Math.max(
+				Math.abs(storage.get(index + stride) - center),
+				Math.abs(storage.get(above) - center)
+		);
+		double rise = Math.max(horizontal, vertical * this.gradientStretch[y]);
+		return (byte) Math.min(BYTE_RANGE, (int) Math.round(rise * this.gradientScale));
+	}
+
+	synchronized void compact() {
+		Storage storage = this.storage;
+		short[] shorts = storage.shorts;
+		if (shorts == null) {
+			return;
+		}
+		int min = Short.MAX_VALUE;
+		int max = Short.MIN_VALUE;
+		for (short value : shorts) {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		if (min == max) {
+			this.storage = Storage.constant((short) min, zeros(shorts.length));
+		} else if (max - min <= BYTE_RANGE) {
+			this.storage = Storage.narrow((short) min, narrow(storage, shorts.length, min));
+		}
+	}
+
+	int haloMask() {
+		return this.haloMask;
+	}
+
+	synchronized void replicateHalo() {
+		int w = this.width;
+		int h = this.height;
+		for (int y = 0; y < h; y++) {
+			int row = y * this.stride;
+			store(w + row, this.storage.get(w - 1 + row));
+		}
+		int last = (h - 1) * this.stride;
+		int halo = h * this.stride;
+		for (int x = 0; x < this.stride; x++) {
+			store(halo + x, this.storage.get(last + x));
+		}
+	}
+
+	synchronized boolean stitchRight(ShortRaster right) {
+		if (right.height != this.height) {
+			return false;
+		}
+		int size = sizeBytes();
+		for (int y = 0; y < this.height; y++) {
+			store(this.width + y * this.stride, right.get(0, y));
+		}
+		if (this.gradientStretch != null) {
+			refreshGradientColumn();
+		}
+		markHalo(HALO_RIGHT);
+		return sizeBytes() != size;
 	}
 
-	void fill(short value) {
-		Arrays.fill(this.data, value);
+	synchronized boolean stitchBottom(ShortRaster bottom) {
+		if (bottom.width != this.width) {
+			return false;
+		}
+		int size = sizeBytes();
+		int halo = this.height * this.stride;
+		for (int x = 0; x < this.width; x++) {
+			store(halo + x, bottom.get(x, 0));
+		}
+		if (this.gradientStretch != null) {
+			refreshGradientRow();
+		}
+		markHalo(HALO_BOTTOM);
+		return sizeBytes() != size;
+	}
+
+	synchronized boolean stitchCorner(ShortRaster corner) {
+		int size = sizeBytes();
+		store(this.width + this.height * this.stride, corner.get(0, 0));
+		markHalo(HALO_CORNER);
+		return sizeBytes() != size;
+	}
+
+	void markHalo(int sides) {
+		synchronized (this) {
+			this.haloMask |= sides;
+		}
+	}
+
+	private void store(int index, short value) {
+		Storage storage = this.storage;
+		if (storage.shorts != null) {
+			storage.shorts[index] = value;
+			return;
+		}
+		int delta = value - storage.base;
+		if (delta >= 0 && delta <= BYTE_RANGE) {
+			if (!storage.shared) {
+				storage.bytes[index] = (byte) delta;
+				return;
+			}
+			if (delta == 0) {
+				return;
+			}
+		}
+		synchronized (this) {
+			Storage widened = widen(this.storage, value, this.stride * (this.height + 1));
+			widened.put(index, value);
+			this.storage = widened;
+		}
+	}
+
+	private static Storage widen(Storage storage, short value, int length) {
+		int min = value;
+		int max = value;
+		if (storage.shared) {
+			min = Math.min(min, storage.base);
+			max = Math.max(max, storage.base);
+		} else {
+			for (byte delta : storage.bytes) {
+				int current = storage.base + (delta & BYTE_RANGE);
+				min = Math.min(min, current);
+				max = Math.max(max, current);
+			}
+		}
+		if (max - min <= BYTE_RANGE) {
+			return Storage.narrow((short) min, narrow(storage, length, min));
+		}
+		short[] shorts = new short[length];
+		for (int i = 0; i < length; i++) {
+			shorts[i] = storage.get(i);
+		}
+		return Storage.wide(shorts);
+	}
+
+	private static byte[] narrow(Storage storage, int length, int base) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) (storage.get(i) - base);
+		}
+		return bytes;
+	}
+
+	private static byte[] zeros(int length) {
+		byte[] zeros = sharedZeros;
+		if (zeros.length < length) {
+			zeros = new byte[length];
+			sharedZeros = zeros;
+		}
+		return zeros;
+	}
+
+	private static final class Storage {
+		private static final byte[] NO_BYTES = new byte[0];
+
+		private final short base;
+		private final byte[] bytes;
+		private final short @Nullable [] shorts;
+		private final boolean shared;
+
+		private Storage(short base, byte[] bytes, short @Nullable [] shorts, boolean shared) {
+			this.base = base;
+			this.bytes = bytes;
+			this.shorts = shorts;
+			this.shared = shared;
+		}
+
+		static Storage wide(short[] shorts) {
+			return new Storage((short) 0, NO_BYTES, shorts, false);
+		}
+
+		static Storage narrow(short base, byte[] bytes) {
+			return new Storage(base, bytes, null, false);
+		}
+
+		static Storage constant(short value, byte[] zeros) {
+			return new Storage(value, zeros, null, true);
+		}
+
+		short get(int index) {
+			if (this.shorts != null) {
+				return this.shorts[index];
+			}
+			return (short) (this.base + (this.bytes[index] & BYTE_RANGE));
+		}
+
+		void put(int index, short value) {
+			if (this.shorts != null) {
+				this.shorts[index] = value;
+			} else {
+				this.bytes[index] = (byte) (value - this.base);
+			}
+		}
 	}
 }
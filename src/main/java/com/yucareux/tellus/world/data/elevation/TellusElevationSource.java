@@ -1,21 +1,31 @@
 package com.yucareux.tellus.world.data.elevation;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.yucareux.tellus.Tellus;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.imageio.ImageIO;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.util.Mth;
 import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
 
 public final class TellusElevationSource {
 	private static final double EQUATOR_CIRCUMFERENCE = 40075017.0;
@@ -32,20 +42,55 @@ public final class TellusElevationSource {
 	private static final int MAX_DOWNSAMPLE_STEP = 256;
 	private static final String ENDPOINT = "https://s3.amazonaws.com/elevation-tiles-prod/terrarium";
 	private static final int MAX_CACHE_TILES = intProperty("tellus.elevation.cacheTiles", 512);
+	private static final long MAX_CACHE_BYTES = intProperty(
+			"tellus.elevation.cacheMegabytes",
+			(int) Math.max(1L, (long) MAX_CACHE_TILES * (TILE_SIZE + 1) * (TILE_SIZE + 1) * Short.BYTES >> 20)
+	) * (1L << 20);
+	private static final int MAX_REQUESTS = intProperty("tellus.elevation.maxRequests", 8);
+	private static final int MISSING_TTL_HOURS = intProperty("tellus.elevation.missingTtlHours", 24 * 7);
+	private static final boolean PYRAMID_ENABLED =
+			Boolean.parseBoolean(System.getProperty("tellus.elevation.pyramid.enabled", "true"));
+	private static final int PYRAMID_LEVELS = PYRAMID_ENABLED ? intProperty("tellus.elevation.pyramid.levels", 2) : 0;
+	private static final int REDUCED_MISS_SECONDS = 5;
+	private static final int LOAD_THREADS = intProperty(
+			"tellus.elevation.loadThreads",
+			Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors() / 2))
+	);
+	private static final TerrariumTileClient CLIENT = new TerrariumTileClient(ENDPOINT, MAX_REQUESTS);
+	private static final ExecutorService LOAD_EXECUTOR = createLoadExecutor();
 
 	private final Path cacheRoot;
-	private final LoadingCache<@NonNull TileKey, ShortRaster> cache;
+	private final ElevationTileStore decodedStore;
+	private final Map<Reduction, ElevationTileStore> reducedStores = new EnumMap<>(Reduction.class);
+	private final MissingTileIndex missingTiles;
+	private final Cache<@NonNull TileKey, ShortRaster> cache;
+	private final Cache<ReducedKey, ShortRaster> reducedCache;
+	private final Cache<ReducedKey, Boolean> reducedMisses;
+	private final ConcurrentMap<@NonNull TileKey, CompletableFuture<@Nullable ShortRaster>> inFlight =
+			new ConcurrentHashMap<>();
 
 	public TellusElevationSource() {
-		this.cacheRoot = FabricLoader.getInstance().getGameDir().resolve("tellus/cache/elevation-tellus");
+		Path tellusCache = FabricLoader.getInstance().getGameDir().resolve("tellus/cache");
+		this.cacheRoot = tellusCache.resolve("elevation-tellus");
+		this.decodedStore = new ElevationTileStore(tellusCache.resolve("elevation-tellus-decoded"));
+		this.reducedStores.put(Reduction.MEAN, this.decodedStore);
+		this.reducedStores.put(Reduction.MIN, new ElevationTileStore(tellusCache.resolve("elevation-tellus-decoded-min")));
+		this.reducedStores.put(Reduction.MAX, new ElevationTileStore(tellusCache.resolve("elevation-tellus-decoded-max")));
+		this.missingTiles = new MissingTileIndex(
+				tellusCache.resolve("elevation-tellus-missing"),
+				TimeUnit.HOURS.toMillis(MISSING_TTL_HOURS)
+		);
 		this.cache = CacheBuilder.newBuilder()
-				.maximumSize(MAX_CACHE_TILES)
-				.build(new CacheLoader<@NonNull TileKey, ShortRaster>() {
-					@Override
-					public ShortRaster load(@NonNull TileKey key) throws Exception {
-						return TellusElevationSource.this.loadTile(key);
-					}
-				});
+				.maximumWeight(MAX_CACHE_BYTES)
+				.weigher((@NonNull TileKey key, ShortRaster raster) -> raster.sizeBytes())
+				.build();
+		this.reducedCache = CacheBuilder.newBuilder()
+				.maximumWeight(Math.max(1L, MAX_CACHE_BYTES / 8))
+				.weigher((ReducedKey key, ShortRaster raster) -> raster.sizeBytes())
+				.build();
+		this.reducedMisses = CacheBuilder.newBuilder()
+				.expireAfterWrite(REDUCED_MISS_SECONDS, TimeUnit.SECONDS)
+				.build();
 	}
 
 	public double sampleElevationMeters(double blockX, double blockZ, double worldScale) {
@@ -53,6 +98,16 @@ public final class TellusElevationSource {
 	}
 
 	public double sampleElevationMeters(double blockX, double blockZ, double worldScale, boolean highResOcean) {
+		return sampleElevationMeters(blockX, blockZ, worldScale, highResOcean, FetchMode.BLOCKING);
+	}
+
+	public double sampleElevationMeters(
+			double blockX,
+			double blockZ,
+			double worldScale,
+			boolean highResOcean,
+			FetchMode mode
+	) {
 		if (worldScale <= 0.0) {
 			return 0.0;
 		}
@@ -64,23 +119,157 @@ public final class TellusElevationSource {
 		}
 
 		int zoom = Mth.clamp(selectZoom(worldScale), MIN_ZOOM, LAND_MAX_ZOOM);
-		double sample = sampleAtZoom(blockX, blockZ, worldScale, zoom);
+		double sample = sampleAtZoom(blockX, blockZ, worldScale, zoom, mode, false);
 		if (!Double.isNaN(sample)) {
 			if (sample <= 0.0 && highResOcean) {
-				double oceanSample = sampleAtZoom(blockX, blockZ, worldScale, OCEAN_MAX_ZOOM);
+				double oceanSample = sampleAtZoom(blockX, blockZ, worldScale, OCEAN_MAX_ZOOM, mode, false);
 				if (!Double.isNaN(oceanSample)) {
 					return oceanSample;
 				}
 			}
 			return sample;
 		}
-		double oceanSample = sampleAtZoom(blockX, blockZ, worldScale, OCEAN_MAX_ZOOM);
+		double oceanSample = sampleAtZoom(blockX, blockZ, worldScale, OCEAN_MAX_ZOOM, mode, false);
 		if (!Double.isNaN(oceanSample)) {
 			return oceanSample;
 		}
 		return 0.0;
 	}
 
+	public double sampleGradient(double blockX, double blockZ, double worldScale, boolean highResOcean) {
+		if (worldScale <= 0.0) {
+			return 0.0;
+		}
+
+		int step = downsampleStep(worldScale, RESOLUTION_METERS);
+		if (step > 1) {
+			blockX = downsampleBlock(blockX, step);
+			blockZ = downsampleBlock(blockZ, step);
+		}
+
+		int zoom = Mth.clamp(selectZoom(worldScale), MIN_ZOOM, LAND_MAX_ZOOM);
+		double sample = sampleAtZoom(blockX, blockZ, worldScale, zoom, FetchMode.BLOCKING, false);
+		if (Double.isNaN(sample) || (sample <= 0.0 && highResOcean)) {
+			double oceanGradient = sampleAtZoom(blockX, blockZ, worldScale, OCEAN_MAX_ZOOM, FetchMode.BLOCKING, true);
+			if (!Double.isNaN(oceanGradient)) {
+				return oceanGradient;
+			}
+			if (Double.isNaN(sample)) {
+				return 0.0;
+			}
+		}
+		return sampleAtZoom(blockX, blockZ, worldScale, zoom, FetchMode.BLOCKING, true);
+	}
+
+	public double sampleReducedElevationMeters(
+			double blockX,
+			double blockZ,
+			double worldScale,
+			int cellBlocks,
+			Reduction reduction
+	) {
+		if (worldScale <= 0.0) {
+			return Double.NaN;
+		}
+		int zoom = Mth.clamp(selectZoom(worldScale), MIN_ZOOM, LAND_MAX_ZOOM);
+		int levels = reductionLevels(zoom, worldScale, cellBlocks);
+		if (levels <= 0) {
+			return Double.NaN;
+		}
+		int coarseZoom = zoom - levels;
+		double blocksPerDegree = EQUATOR_CIRCUMFERENCE / 360.0 / worldScale;
+		double lon = blockX / blocksPerDegree;
+		double mercatorY = mercatorRow(-blockZ / blocksPerDegree);
+		if (Double.isNaN(mercatorY) || lon < MIN_LON || lon > MAX_LON) {
+			return Double.NaN;
+		}
+		double n = 1L << coarseZoom;
+		double x = (lon + 180.0) / 360.0 * n;
+		double y = mercatorY * n;
+		if (x < 0.0 || y < 0.0 || x >= n || y >= n) {
+			return Double.NaN;
+		}
+
+		int tileX = Mth.floor(x);
+		int tileY = Mth.floor(y);
+		ShortRaster raster = getReducedTile(new TileKey(coarseZoom, tileX, tileY), reduction, levels);
+		if (raster == null) {
+			return Double.NaN;
+		}
+		return sampleTile(coarseZoom, tileX, tileY, raster, x * TILE_SIZE, y * TILE_SIZE, false);
+	}
+
+	public void sampleElevationGrid(
+			int minX,
+			int minZ,
+			int width,
+			int height,
+			int step,
+			double worldScale,
+			double[] out
+	) {
+		sampleElevationGrid(minX, minZ, width, height, step, worldScale, null, out);
+	}
+
+	public void sampleElevationGrid(
+			int minX,
+			int minZ,
+			int width,
+			int height,
+			int step,
+			double worldScale,
+			boolean @Nullable [] highResOcean,
+			double[] out
+	) {
+		int area = width * height;
+		if (width < 0 || height < 0 || step <= 0 || out.length < area) {
+			throw new IllegalArgumentException("Invalid elevation grid");
+		}
+		if (highResOcean != null && highResOcean.length < area) {
+			throw new IllegalArgumentException("Invalid ocean zoom mask");
+		}
+		if (worldScale <= 0.0) {
+			Arrays.fill(out, 0, area, 0.0);
+			return;
+		}
+
+		int downsample = downsampleStep(worldScale, RESOLUTION_METERS);
+		int zoom = Mth.clamp(selectZoom(worldScale), MIN_ZOOM, LAND_MAX_ZOOM);
+		double blocksPerDegree = EQUATOR_CIRCUMFERENCE / 360.0 / worldScale;
+		GridCursor landCursor = new GridCursor(zoom);
+		GridCursor oceanCursor = new GridCursor(OCEAN_MAX_ZOOM);
+		for (int row = 0; row < height; row++) {
+			double blockZ = minZ + row * step;
+			if (downsample > 1) {
+				blockZ = downsampleBlock(blockZ, downsample);
+			}
+			double mercatorY = mercatorRow(-blockZ / blocksPerDegree);
+			int rowIndex = row * width;
+			for (int column = 0; column < width; column++) {
+				double blockX = minX + column * step;
+				if (downsample > 1) {
+					blockX = downsampleBlock(blockX, downsample);
+				}
+				double lon = blockX / blocksPerDegree;
+				int index = rowIndex + column;
+				boolean oceanZoom = highResOcean == null || highResOcean[index];
+				double sample = sampleGrid(landCursor, lon, mercatorY);
+				if (!Double.isNaN(sample)) {
+					if (sample <= 0.0 && oceanZoom) {
+						double oceanSample = sampleGrid(oceanCursor, lon, mercatorY);
+						if (!Double.isNaN(oceanSample)) {
+							sample = oceanSample;
+						}
+					}
+					out[index] = sample;
+					continue;
+				}
+				double oceanSample = sampleGrid(oceanCursor, lon, mercatorY);
+				out[index] = Double.isNaN(oceanSample) ? 0.0 : oceanSample;
+			}
+		}
+	}
+
 	public void prefetchTiles(double blockX, double blockZ, double worldScale, int radius) {
 		if (worldScale <= 0.0) {
 			return;
@@ -104,12 +293,19 @@ public final class TellusElevationSource {
 		int maxY = Math.min(tilesPerAxis - 1, center.y() + clampedRadius);
 		for (int tileY = minY; tileY <= maxY; tileY++) {
 			for (int tileX = minX; tileX <= maxX; tileX++) {
-				prefetchTile(new TileKey(zoom, tileX, tileY));
+				requestTile(new TileKey(zoom, tileX, tileY));
 			}
 		}
 	}
 
-	private double sampleAtZoom(double blockX, double blockZ, double worldScale, int zoom) {
+	private double sampleAtZoom(
+			double blockX,
+			double blockZ,
+			double worldScale,
+			int zoom,
+			FetchMode mode,
+			boolean gradient
+	) {
 		double metersPerDegree = EQUATOR_CIRCUMFERENCE / 360.0;
 		double blocksPerDegree = metersPerDegree / worldScale;
 		double lon = blockX / blocksPerDegree;
@@ -129,14 +325,212 @@ public final class TellusElevationSource {
 		int tileX = Mth.floor(x);
 		int tileY = Mth.floor(y);
 
+		if (mode == FetchMode.COARSE_FALLBACK) {
+			return sampleCached(zoom, tileX, tileY, x, y);
+		}
 		ShortRaster raster = getTile(new TileKey(zoom, tileX, tileY));
 		if (raster == null) {
 			return Double.NaN;
 		}
 
-		double globalX = x * TILE_SIZE;
-		double globalY = y * TILE_SIZE;
-		return sampleBilinearAcrossTiles(zoom, globalX, globalY, tileX, tileY, raster);
+		if (gradient) {
+			return sampleTileGradient(tileX, tileY, raster, x * TILE_SIZE, y * TILE_SIZE);
+		}
+		return sampleTile(zoom, tileX, tileY, raster, x * TILE_SIZE, y * TILE_SIZE, true);
+	}
+
+	private double sampleCached(int zoom, int tileX, int tileY, double x, double y) {
+		TileKey key = new TileKey(zoom, tileX, tileY);
+		ShortRaster raster = this.cache.getIfPresent(key);
+		if (raster != null) {
+			return sampleTile(zoom, tileX, tileY, raster, x * TILE_SIZE, y * TILE_SIZE, false);
+		}
+		requestTile(key);
+		for (int coarseZoom = zoom - 1; coarseZoom >= MIN_ZOOM; coarseZoom--) {
+			double scale = 1 << (zoom - coarseZoom);
+			double coarseX = x / scale;
+			double coarseY = y / scale;
+			int coarseTileX = Mth.floor(coarseX);
+			int coarseTileY = Mth.floor(coarseY);
+			ShortRaster coarse = this.cache.getIfPresent(new TileKey(coarseZoom, coarseTileX, coarseTileY));
+			if (coarse != null) {
+				return sampleTile(
+						coarseZoom,
+						coarseTileX,
+						coarseTileY,
+						coarse,
+						coarseX * TILE_SIZE,
+						coarseY * TILE_SIZE,
+						false
+				);
+			}
+		}
+		return Double.NaN;
+	}
+
+	private double sampleGrid(GridCursor cursor, double lon, double mercatorY) {
+		if (Double.isNaN(mercatorY) || lon < MIN_LON || lon > MAX_LON) {
+			return Double.NaN;
+		}
+		double n = cursor.scale;
+		double x = (lon + 180.0) / 360.0 * n;
+		double y = mercatorY * n;
+		if (x < 0.0 || y < 0.0 || x >= n || y >= n) {
+			return Double.NaN;
+		}
+
+		int tileX = Mth.floor(x);
+		int tileY = Mth.floor(y);
+		ShortRaster raster = cursor.tile(this, tileX, tileY);
+		if (raster == null) {
+			return Double.NaN;
+		}
+
+		return sampleTile(cursor.zoom, tileX, tileY, raster, x * TILE_SIZE, y * TILE_SIZE, true);
+	}
+
+	private double sampleTile(
+			int zoom,
+			int tileX,
+			int tileY,
+			ShortRaster raster,
+			double globalX,
+			double globalY,
+			boolean loadNeighbours
+	) {
+		int maxX = raster.width() - 1;
+		int maxY = raster.height() - 1;
+		double localX = globalX - tileX * TILE_SIZE;
+		double localY = globalY - tileY * TILE_SIZE;
+		int x0 = Mth.clamp(Mth.floor(localX), 0, maxX);
+		int y0 = Mth.clamp(Mth.floor(localY), 0, maxY);
+		int halo = 0;
+		if (x0 >= maxX) {
+			halo |= ShortRaster.HALO_RIGHT;
+		}
+		if (y0 >= maxY) {
+			halo |= ShortRaster.HALO_BOTTOM;
+		}
+		if (halo == (ShortRaster.HALO_RIGHT | ShortRaster.HALO_BOTTOM)) {
+			halo |= ShortRaster.HALO_CORNER;
+		}
+		if (loadNeighbours && (raster.haloMask() & halo) != halo) {
+			stitchHalo(zoom, tileX, tileY, raster, halo);
+		}
+		return raster.sampleBilinear(x0, y0, localX - x0, localY - y0);
+	}
+
+	private static double sampleTileGradient(int tileX, int tileY, ShortRaster raster, double globalX, double globalY) {
+		double localX = globalX - tileX * TILE_SIZE;
+		double localY = globalY - tileY * TILE_SIZE;
+		int x0 = Mth.clamp(Mth.floor(localX), 0, raster.width() - 1);
+		int y0 = Mth.clamp(Mth.floor(localY), 0, raster.height() - 1);
+		return raster.sampleGradient(x0, y0, localX - x0, localY - y0);
+	}
+
+	private void stitchHalo(int zoom, int tileX, int tileY, ShortRaster raster, int sides) {
+		int missing = sides & ~raster.haloMask();
+		int tilesPerAxis = 1 << zoom;
+		boolean lastColumn = tileX + 1 >= tilesPerAxis;
+		boolean lastRow = tileY + 1 >= tilesPerAxis;
+		if ((missing & ShortRaster.HALO_RIGHT) != 0) {
+			if (lastColumn) {
+				raster.markHalo(ShortRaster.HALO_RIGHT);
+			} else {
+				ShortRaster right = getTile(new TileKey(zoom, tileX + 1, tileY));
+				if (right != null && raster.stitchRight(right)) {
+					reweigh(new TileKey(zoom, tileX, tileY), raster);
+				}
+			}
+		}
+		if ((missing & ShortRaster.HALO_BOTTOM) != 0) {
+			if (lastRow) {
+				raster.markHalo(ShortRaster.HALO_BOTTOM);
+			} else {
+				ShortRaster bottom = getTile(new TileKey(zoom, tileX, tileY + 1));
+				if (bottom != null && raster.stitchBottom(bottom)) {
+					reweigh(new TileKey(zoom, tileX, tileY), raster);
+				}
+			}
+		}
+		if ((missing & ShortRaster.HALO_CORNER) != 0) {
+			if (lastColumn || lastRow) {
+				raster.markHalo(ShortRaster.HALO_CORNER);
+			} else {
+				ShortRaster corner = getTile(new TileKey(zoom, tileX + 1, tileY + 1));
+				if (corner != null && raster.stitchCorner(corner)) {
+					reweigh(new TileKey(zoom, tileX, tileY), raster);
+				}
+			}
+		}
+	}
+
+	private void stitchNeighbours(@NonNull TileKey key, ShortRaster raster) {
+		int zoom = key.zoom();
+		int x = key.x();
+		int y = key.y();
+		ShortRaster right = this.cache.getIfPresent(new TileKey(zoom, x + 1, y));
+		if (right != null && raster.stitchRight(right)) {
+			reweigh(key, raster);
+		}
+		ShortRaster bottom = this.cache.getIfPresent(new TileKey(zoom, x, y + 1));
+		if (bottom != null && raster.stitchBottom(bottom)) {
+			reweigh(key, raster);
+		}
+		ShortRaster corner = this.cache.getIfPresent(new TileKey(zoom, x + 1, y + 1));
+		if (corner != null && raster.stitchCorner(corner)) {
+			reweigh(key, raster);
+		}
+		TileKey leftKey = new TileKey(zoom, x - 1, y);
+		ShortRaster left = this.cache.getIfPresent(leftKey);
+		if (left != null && left.stitchRight(raster)) {
+			reweigh(leftKey, left);
+		}
+		TileKey topKey = new TileKey(zoom, x, y - 1);
+		ShortRaster top = this.cache.getIfPresent(topKey);
+		if (top != null && top.stitchBottom(raster)) {
+			reweigh(topKey, top);
+		}
+		TileKey topLeftKey = new TileKey(zoom, x - 1, y - 1);
+		ShortRaster topLeft = this.cache.getIfPresent(topLeftKey);
+		if (topLeft != null && topLeft.stitchCorner(raster)) {
+			reweigh(topLeftKey, topLeft);
+		}
+	}
+
+	private void reweigh(@NonNull TileKey key, ShortRaster raster) {
+		this.cache.asMap().replace(key, raster, raster);
+	}
+
+	private static int reductionLevels(int zoom, double worldScale, int cellBlocks) {
+		double pixelBlocks = pixelMeters(zoom) / worldScale;
+		int levels = 0;
+		while (levels < PYRAMID_LEVELS && zoom - levels > MIN_ZOOM && pixelBlocks * (2 << levels) <= cellBlocks) {
+			levels++;
+		}
+		return levels;
+	}
+
+	private static double pixelMeters(int zoom) {
+		return EQUATOR_CIRCUMFERENCE / ((double) TILE_SIZE * (1L << zoom));
+	}
+
+	private static double[] rowStretch(@NonNull TileKey key, int height) {
+		double[] stretch = new double[height];
+		double rows = (double) height * (1L << key.zoom());
+		for (int y = 0; y < height; y++) {
+			double mercatorY = (key.y() * (double) height + y + 0.5) / rows;
+			stretch[y] = Math.cosh(Math.PI * (1.0 - 2.0 * mercatorY));
+		}
+		return stretch;
+	}
+
+	private static double mercatorRow(double lat) {
+		if (lat < MIN_LAT || lat > MAX_LAT) {
+			return Double.NaN;
+		}
+		double latRad = Math.toRadians(lat);
+		return (1.0 - Math.log(Math.tan(latRad) + 1.0 / Math.cos(latRad)) / Math.PI) / 2.0;
 	}
 
 	private static int downsampleStep(double worldScale, double resolutionMeters) {
@@ -182,17 +576,6 @@ public final class TellusElevationSource {
 		return new TileKey(zoom, tileX, tileY);
 	}
 
-	private void prefetchTile(@NonNull TileKey key) {
-		if (this.cache.getIfPresent(key) != null) {
-			return;
-		}
-		try {
-			this.cache.get(key);
-		} catch (Exception e) {
-			Tellus.LOGGER.debug("Failed to prefetch elevation tile {}", key, e);
-		}
-	}
-
 	private static int intProperty(String key, int defaultValue) {
 		String value = System.getProperty(key);
 		if (value == null) {
@@ -205,131 +588,185 @@ public final class TellusElevationSource {
 		}
 	}
 
-	private ShortRaster getTile(@NonNull TileKey key) {
+	private @Nullable ShortRaster getTile(@NonNull TileKey key) {
+		ShortRaster cached = this.cache.getIfPresent(key);
+		if (cached != null) {
+			return cached;
+		}
 		try {
-			return this.cache.get(key);
-		} catch (Exception e) {
-			Tellus.LOGGER.warn("Failed to load elevation tile {}", key, e);
+			return requestTile(key).join();
+		} catch (CompletionException e) {
+			Tellus.LOGGER.warn("Failed to load elevation tile {}", key, e.getCause());
 			return null;
 		}
 	}
 
-	private ShortRaster loadTile(@NonNull TileKey key) throws IOException {
-		Path cachePath = this.cacheRoot.resolve(key.zoom() + "/" + key.x() + "/" + key.y() + ".png");
-		if (Files.exists(cachePath)) {
-			try (InputStream input = Files.newInputStream(cachePath)) {
-				return readPngRaster(input);
-			}
+	private CompletableFuture<@Nullable ShortRaster> requestTile(@NonNull TileKey key) {
+		ShortRaster cached = this.cache.getIfPresent(key);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
 		}
-		byte[] data = downloadTile(key);
-		if (data == null) {
-			return null;
+		if (this.missingTiles.isMissing(key.zoom(), key.x(), key.y())) {
+			return CompletableFuture.completedFuture(null);
 		}
-
-		cacheTile(cachePath, data);
-		try (InputStream input = new ByteArrayInputStream(data)) {
-			return readPngRaster(input);
+		CompletableFuture<@Nullable ShortRaster> pending = new CompletableFuture<>();
+		CompletableFuture<@Nullable ShortRaster> existing = this.inFlight.putIfAbsent(key, pending);
+		if (existing != null) {
+			return existing;
 		}
+		startLoad(key).whenComplete((raster, error) -> {
+			this.inFlight.remove(key, pending);
+			if (error != null) {
+				Tellus.LOGGER.debug("Failed to fetch elevation tile {}", key, error);
+				pending.completeExceptionally(error);
+			} else {
+				pending.complete(raster);
+			}
+		});
+		return pending;
 	}
 
-	private byte[] downloadTile(TileKey key) throws IOException {
-		URI uri = URI.create(String.format("%s/%d/%d/%d.png", ENDPOINT, key.zoom(), key.x(), key.y()));
-		HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
-		connection.setConnectTimeout(8000);
-		connection.setReadTimeout(8000);
-		connection.setRequestProperty("User-Agent", "Tellus/1.0 (Minecraft Mod)");
-		if (connection.getResponseCode() == 404) {
-			return null;
-		}
-		try (InputStream input = connection.getInputStream()) {
-			return input.readAllBytes();
-		}
+	private CompletableFuture<@Nullable ShortRaster> startLoad(@NonNull TileKey key) {
+		return CompletableFuture
+				.supplyAsync(() -> loadLocalTile(key), LOAD_EXECUTOR)
+				.thenCompose(local -> {
+					if (local != null) {
+						return CompletableFuture.completedFuture(local);
+					}
+					return CLIENT.fetch(key.zoom(), key.x(), key.y())
+							.thenApplyAsync(data -> decodeDownloadedTile(key, data), LOAD_EXECUTOR);
+				})
+				.thenApply(raster -> {
+					if (raster != null) {
+						raster.compact();
+						raster.computeGradient(pixelMeters(key.zoom()), rowStretch(key, raster.height()));
+						this.cache.put(key, raster);
+						stitchNeighbours(key, raster);
+					}
+					return raster;
+				});
 	}
 
-	private void cacheTile(Path cachePath, byte[] data) {
+	private @Nullable ShortRaster loadLocalTile(@NonNull TileKey key) {
 		try {
-			Files.createDirectories(cachePath.getParent());
-			Files.write(cachePath, data);
+			ShortRaster decoded = this.decodedStore.read(key.zoom(), key.x(), key.y());
+			if (decoded != null) {
+				return decoded;
+			}
 		} catch (IOException e) {
-			Tellus.LOGGER.warn("Failed to cache elevation tile {}", cachePath, e);
+			Tellus.LOGGER.warn("Discarding unreadable decoded elevation tile {}", key, e);
+			this.decodedStore.delete(key.zoom(), key.x(), key.y());
 		}
-	}
-
-	private double sampleBilinearAcrossTiles(
-			int zoom,
-			double globalX,
-			double globalY,
-			int baseTileX,
-			int baseTileY,
-			ShortRaster baseRaster
-	) {
-		int tilesPerAxis = 1 << zoom;
-		int maxPixel = tilesPerAxis * TILE_SIZE - 1;
-		double clampedX = Mth.clamp(globalX, 0.0, maxPixel);
-		double clampedY = Mth.clamp(globalY, 0.0, maxPixel);
-		int x0 = Mth.floor(clampedX);
-		int y0 = Mth.floor(clampedY);
-		int x1 = Math.min(x0 + 1, maxPixel);
-		int y1 = Math.min(y0 + 1, maxPixel);
 
-		double dx = clampedX - x0;
-		double dy = clampedY - y0;
+		Path legacyPath = this.cacheRoot.resolve(key.zoom() + "/" + key.x() + "/" + key.y() + ".png");
+		if (!Files.exists(legacyPath)) {
+			return buildFromChildren(key, Reduction.MEAN, PYRAMID_LEVELS);
+		}
+		ShortRaster raster;
+		try (InputStream input = Files.newInputStream(legacyPath)) {
+			raster = readPngRaster(input);
+		} catch (IOException e) {
+			Tellus.LOGGER.warn("Failed to read cached elevation tile {}", legacyPath, e);
+			return null;
+		}
+		migrateLegacyTile(key, legacyPath, raster);
+		return raster;
+	}
 
-		double v00 = samplePixel(zoom, x0, y0, baseTileX, baseTileY, baseRaster);
-		double v10 = samplePixel(zoom, x1, y0, baseTileX, baseTileY, baseRaster);
-		double v01 = samplePixel(zoom, x0, y1, baseTileX, baseTileY, baseRaster);
-		double v11 = samplePixel(zoom, x1, y1, baseTileX, baseTileY, baseRaster);
-		if (Double.isNaN(v00) || Double.isNaN(v10) || Double.isNaN(v01) || Double.isNaN(v11)) {
-			double localX = clampedX - baseTileX * TILE_SIZE;
-			double localY = clampedY - baseTileY * TILE_SIZE;
-			return sampleBilinearLocal(baseRaster, localX, localY);
+	private @Nullable ShortRaster getReducedTile(@NonNull TileKey key, Reduction reduction, int levels) {
+		ReducedKey reducedKey = new ReducedKey(key, reduction);
+		ShortRaster cached = this.reducedCache.getIfPresent(reducedKey);
+		if (cached != null) {
+			return cached;
 		}
+		if (this.reducedMisses.getIfPresent(reducedKey) != null) {
+			return null;
+		}
+		ShortRaster raster = loadReducedTile(key, reduction, levels);
+		if (raster == null) {
+			this.reducedMisses.put(reducedKey, Boolean.TRUE);
+			return null;
+		}
+		this.reducedCache.put(reducedKey, raster);
+		return raster;
+	}
 
-		double lerpX0 = Mth.lerp(dx, v00, v10);
-		double lerpX1 = Mth.lerp(dx, v01, v11);
-		return Mth.lerp(dy, lerpX0, lerpX1);
+	private @Nullable ShortRaster loadReducedTile(@NonNull TileKey key, Reduction reduction, int levels) {
+		if (reduction == Reduction.MEAN) {
+			ShortRaster stored = loadStoredTile(key);
+			return stored != null ? stored : buildFromChildren(key, reduction, levels);
+		}
+		ShortRaster stored = readStoredTile(this.reducedStores.get(reduction), key);
+		if (stored == null) {
+			stored = buildFromChildren(key, reduction, levels);
+		}
+		return stored != null ? stored : loadStoredTile(key);
 	}
 
-	private double samplePixel(
-			int zoom,
-			int pixelX,
-			int pixelY,
-			int baseTileX,
-			int baseTileY,
-			ShortRaster baseRaster
-	) {
-		int tileX = Math.floorDiv(pixelX, TILE_SIZE);
-		int tileY = Math.floorDiv(pixelY, TILE_SIZE);
-		ShortRaster raster = (tileX == baseTileX && tileY == baseTileY)
-				? baseRaster
-				: getTile(new TileKey(zoom, tileX, tileY));
-		if (raster == null) {
-			return Double.NaN;
+	private @Nullable ShortRaster buildFromChildren(@NonNull TileKey key, Reduction reduction, int levels) {
+		int childZoom = key.zoom() + 1;
+		if (levels <= 0 || childZoom > LAND_MAX_ZOOM) {
+			return null;
+		}
+		ShortRaster[] children = new ShortRaster[4];
+		for (int i = 0; i < children.length; i++) {
+			TileKey childKey = new TileKey(childZoom, key.x() * 2 + (i & 1), key.y() * 2 + (i >> 1));
+			ShortRaster child = loadReducedTile(childKey, reduction, levels - 1);
+			if (child == null) {
+				return null;
+			}
+			children[i] = child;
 		}
-		int localX = pixelX - tileX * TILE_SIZE;
-		int localY = pixelY - tileY * TILE_SIZE;
-		return raster.get(localX, localY);
+		ShortRaster parent = ElevationPyramid.downsample(children[0], children[1], children[2], children[3], reduction);
+		this.reducedStores.get(reduction).write(key.zoom(), key.x(), key.y(), parent);
+		return parent;
 	}
 
-	private static double sampleBilinearLocal(ShortRaster raster, double x, double y) {
-		int maxX = raster.width() - 1;
-		int maxY = raster.height() - 1;
-		int x0 = Mth.clamp(Mth.floor(x), 0, maxX);
-		int y0 = Mth.clamp(Mth.floor(y), 0, maxY);
-		int x1 = Math.min(x0 + 1, maxX);
-		int y1 = Math.min(y0 + 1, maxY);
+	private @Nullable ShortRaster loadStoredTile(@NonNull TileKey key) {
+		ShortRaster cached = this.cache.getIfPresent(key);
+		if (cached != null) {
+			return cached;
+		}
+		return readStoredTile(this.decodedStore, key);
+	}
 
-		double dx = x - x0;
-		double dy = y - y0;
+	private static @Nullable ShortRaster readStoredTile(ElevationTileStore store, @NonNull TileKey key) {
+		if (!store.contains(key.zoom(), key.x(), key.y())) {
+			return null;
+		}
+		try {
+			return store.read(key.zoom(), key.x(), key.y());
+		} catch (IOException e) {
+			Tellus.LOGGER.debug("Failed to read decoded elevation tile {}", key, e);
+			return null;
+		}
+	}
 
-		double v00 = raster.get(x0, y0);
-		double v10 = raster.get(x1, y0);
-		double v01 = raster.get(x0, y1);
-		double v11 = raster.get(x1, y1);
+	private @Nullable ShortRaster decodeDownloadedTile(@NonNull TileKey key, byte @Nullable [] data) {
+		if (data == null) {
+			this.missingTiles.markMissing(key.zoom(), key.x(), key.y());
+			return null;
+		}
+		ShortRaster raster;
+		try (InputStream input = new ByteArrayInputStream(data)) {
+			raster = readPngRaster(input);
+		} catch (IOException e) {
+			throw new CompletionException(e);
+		}
+		this.decodedStore.write(key.zoom(), key.x(), key.y(), raster);
+		return raster;
+	}
 
-		double lerpX0 = Mth.lerp(dx, v00, v10);
-		double lerpX1 = Mth.lerp(dx, v01, v11);
-		return Mth.lerp(dy, lerpX0, lerpX1);
+	private void migrateLegacyTile(TileKey key, Path legacyPath, ShortRaster raster) {
+		this.decodedStore.write(key.zoom(), key.x(), key.y(), raster);
+		if (!this.decodedStore.contains(key.zoom(), key.x(), key.y())) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(legacyPath);
+		} catch (IOException e) {
+			Tellus.LOGGER.debug("Failed to remove migrated elevation tile {}", legacyPath, e);
+		}
 	}
 
 	private static int selectZoom(double worldScale) {
@@ -361,10 +798,61 @@ public final class TellusElevationSource {
 				raster.set(x, y, (short) Math.round(elevation));
 			}
 		}
+		raster.replicateHalo();
 
 		return raster;
 	}
 
+	private static ExecutorService createLoadExecutor() {
+		ThreadFactory factory = new ThreadFactory() {
+			private final AtomicInteger index = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "tellus-elevation-load-" + index.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		return Executors.newFixedThreadPool(LOAD_THREADS, factory);
+	}
+
+	public enum FetchMode {
+		BLOCKING,
+		COARSE_FALLBACK
+	}
+
+	public enum Reduction {
+		MIN,
+		MEAN,
+		MAX
+	}
+
 	private record TileKey(int zoom, int x, int y) {
 	}
+
+	private record ReducedKey(TileKey tile, Reduction reduction) {
+	}
+
+	private static final class GridCursor {
+		private final int zoom;
+		private final double scale;
+		private int tileX = -1;
+		private int tileY = -1;
+		private @Nullable ShortRaster raster;
+
+		private GridCursor(int zoom) {
+			this.zoom = zoom;
+			this.scale = Math.pow(2.0, zoom);
+		}
+
+		private @Nullable ShortRaster tile(TellusElevationSource source, int tileX, int tileY) {
+			if (tileX != this.tileX || tileY != this.tileY) {
+				this.tileX = tileX;
+				this.tileY = tileY;
+				this.raster = source.getTile(new TileKey(this.zoom, tileX, tileY));
+			}
+			return this.raster;
+		}
+	}
 }
@@ -5,13 +5,20 @@ import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import org.tukaani.xz.SingleXZInputStream;
 
 final class TellusRasterReader {
 	private static final byte[] SIGNATURE = "TELLUS/RASTER".getBytes(StandardCharsets.US_ASCII);
 	private static final int FORMAT_SHORT = 2;
+	private static final int CHUNK_HEADER_SIZE = 17;
 
 	private TellusRasterReader() {
 	}
@@ -36,7 +43,7 @@ final class TellusRasterReader {
 			throw new IOException("Expected short raster format");
 		}
 
-		ShortRaster raster = ShortRaster.create(width, height);
+		List<byte[]> chunks = new ArrayList<>();
 		while (true) {
 			int chunkLength;
 			try {
@@ -47,27 +54,40 @@ final class TellusRasterReader {
 
 			byte[] chunkBytes = new byte[chunkLength];
 			dataIn.readFully(chunkBytes);
-			readChunk(new ByteArrayInputStream(chunkBytes), raster);
+			chunks.add(chunkBytes);
 		}
 
+		ShortRaster raster = ShortRaster.create(width, height);
+		try {
+			ForkJoinPool.commonPool().invoke(new DecodeTask(chunks, 0, chunks.size(), raster));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		raster.replicateHalo();
+		raster.compact();
 		return raster;
 	}
 
-	private static void readChunk(InputStream input, ShortRaster raster) throws IOException {
-		DataInputStream dataIn = new DataInputStream(input);
-		int chunkX = dataIn.readInt();
-		int chunkY = dataIn.readInt();
-		int chunkWidth = dataIn.readInt();
-		int chunkHeight = dataIn.readInt();
-		RasterFilter filter = RasterFilter.byId(dataIn.readUnsignedByte());
+	private static void readChunk(byte[] chunkBytes, ShortRaster raster) throws IOException {
+		ByteBuffer header = ByteBuffer.wrap(chunkBytes);
+		if (header.remaining() < CHUNK_HEADER_SIZE) {
+			throw new EOFException("Truncated tellus raster chunk");
+		}
+		int chunkX = header.getInt();
+		int chunkY = header.getInt();
+		int chunkWidth = header.getInt();
+		int chunkHeight = header.getInt();
+		RasterFilter filter = RasterFilter.byId(header.get() & 0xFF);
 
 		short[] raw = new short[chunkWidth * chunkHeight];
+		byte[] decompressed = new byte[raw.length * Short.BYTES];
+		InputStream input = new ByteArrayInputStream(chunkBytes, CHUNK_HEADER_SIZE, chunkBytes.length - CHUNK_HEADER_SIZE);
 		try (SingleXZInputStream xzIn = new SingleXZInputStream(input)) {
-			DataInputStream xzData = new DataInputStream(xzIn);
-			for (int i = 0; i < raw.length; i++) {
-				raw[i] = xzData.readShort();
+			if (xzIn.readNBytes(decompressed, 0, decompressed.length) != decompressed.length) {
+				throw new EOFException("Truncated tellus raster chunk");
 			}
 		}
+		ByteBuffer.wrap(decompressed).asShortBuffer().get(raw);
 
 		applyFilter(filter, raw, chunkWidth, chunkHeight);
 		copyChunk(raster, raw, chunkX, chunkY, chunkWidth, chunkHeight);
@@ -78,19 +98,16 @@ final class TellusRasterReader {
 			return;
 		}
 
-		short[] decoded = new short[raw.length];
 		for (int y = 0; y < height; y++) {
 			for (int x = 0; x < width; x++) {
 				int index = x + y * width;
 				int value = raw[index];
-				int left = x > 0 ? decoded[index - 1] : 0;
-				int up = y > 0 ? decoded[index - width] : 0;
-				int upLeft = (x > 0 && y > 0) ? decoded[index - width - 1] : 0;
-				decoded[index] = (short) filter.apply(value, left, up, upLeft);
+				int left = x > 0 ? raw[index - 1] : 0;
+				int up = y > 0 ? raw[index - width] : 0;
+				int upLeft = (x > 0 && y > 0) ? raw[index - width - 1] : 0;
+				raw[index] = (short) filter.apply(value, left, up, upLeft);
 			}
 		}
-
-		System.arraycopy(decoded, 0, raw, 0, raw.length);
 	}
 
 	private static void copyChunk(ShortRaster raster, short[] raw, int chunkX, int chunkY, int width, int height) {
@@ -109,6 +126,39 @@ final class TellusRasterReader {
 		}
 	}
 
+	private static final class DecodeTask extends RecursiveAction {
+		private final List<byte[]> chunks;
+		private final int start;
+		private final int end;
+		private final ShortRaster raster;
+
+		private DecodeTask(List<byte[]> chunks, int start, int end, ShortRaster raster) {
+			this.chunks = chunks;
+			this.start = start;
+			this.end = end;
+			this.raster = raster;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.end - this.start <= 1) {
+				for (int i = this.start; i < this.end; i++) {
+					try {
+						readChunk(this.chunks.get(i), this.raster);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				return;
+			}
+			int middle = (this.start + this.end) >>> 1;
+			invokeAll(
+					new DecodeTask(this.chunks, this.start, middle, this.raster),
+					new DecodeTask(this.chunks, middle, this.end, this.raster)
+			);
+		}
+	}
+
 	private enum RasterFilter {
 		NONE {
 			@Override
@@ -0,0 +1,89 @@
+package com.yucareux.tellus.world.data.elevation;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class TerrariumTileClient {
+	private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(8);
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(8);
+	private static final String USER_AGENT = "Tellus/1.0 (Minecraft Mod)";
+
+	private final String endpoint;
+	private final int maxRequests;
+	private final HttpClient client;
+	private final Queue<PendingFetch> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger activeRequests = new AtomicInteger();
+
+	TerrariumTileClient(String endpoint, int maxRequests) {
+		this.endpoint = endpoint;
+		this.maxRequests = Math.max(1, maxRequests);
+		this.client = HttpClient.newBuilder()
+				.connectTimeout(CONNECT_TIMEOUT)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.build();
+	}
+
+	CompletableFuture<byte[]> fetch(int zoom, int x, int y) {
+		URI uri = URI.create(String.format("%s/%d/%d/%d.png", this.endpoint, zoom, x, y));
+		PendingFetch pending = new PendingFetch(uri, new CompletableFuture<>());
+		this.queue.add(pending);
+		drain();
+		return pending.result();
+	}
+
+	private void drain() {
+		while (!this.queue.isEmpty()) {
+			int active = this.activeRequests.get();
+			if (active >= this.maxRequests) {
+				return;
+			}
+			if (!this.activeRequests.compareAndSet(active, active + 1)) {
+				continue;
+			}
+			PendingFetch next = this.queue.poll();
+			if (next == null) {
+				this.activeRequests.decrementAndGet();
+				continue;
+			}
+			send(next);
+		}
+	}
+
+	private void send(PendingFetch pending) {
+		HttpRequest request = HttpRequest.newBuilder(pending.uri())
+				.timeout(REQUEST_TIMEOUT)
+				.header("User-Agent", USER_AGENT)
+				.GET()
+				.build();
+		CompletableFuture<HttpResponse<byte[]>> response;
+		try {
+			response = this.client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+		} catch (RuntimeException e) {
+			response = CompletableFuture.failedFuture(e);
+		}
+		response.whenComplete((reply, error) -> {
+			this.activeRequests.decrementAndGet();
+			if (error != null) {
+				pending.result().completeExceptionally(error);
+			} else if (reply.statusCode() == 404) {
+				pending.result().complete(null);
+			} else if (reply.statusCode() != 200) {
+				pending.result().completeExceptionally(new IOException("Elevation HTTP error " + reply.statusCode()));
+			} else {
+				pending.result().complete(reply.body());
+			}
+			drain();
+		});
+	}
+
+	private record PendingFetch(URI uri, CompletableFuture<byte[]> result) {
+	}
+}
@@ -0,0 +1,153 @@
+package com.yucareux.tellus.world.data.koppen;
+
+import com.yucareux.tellus.Tellus;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import org.jspecify.annotations.Nullable;
+
+final class ResidentClassRaster {
+	private static final int MAGIC = 0x544B5052;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+
+	private final MappedByteBuffer data;
+	private final int width;
+	private final int shift;
+
+	private ResidentClassRaster(MappedByteBuffer data, int width, int shift) {
+		this.data = data;
+		this.width = width;
+		this.shift = shift;
+	}
+
+	int get(int pixelX, int pixelY) {
+		return Byte.toUnsignedInt(this.data.get((pixelY >> this.shift) * this.width + (pixelX >> this.shift)));
+	}
+
+	static @Nullable ResidentClassRaster open(Path path, int sourceWidth, int sourceHeight, int shift) throws IOException {
+		if (!Files.exists(path)) {
+			return null;
+		}
+		int width = scaled(sourceWidth, shift);
+		int height = scaled(sourceHeight, shift);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header, 0);
+			header.flip();
+			if (header.getInt() != MAGIC
+					|| header.getInt() != VERSION
+					|| header.getInt() != sourceWidth
+					|| header.getInt() != sourceHeight
+					|| header.getInt() != shift
+					|| channel.size() != HEADER_SIZE + (long) width * height) {
+				Tellus.LOGGER.warn("Discarding mismatched resident Koppen raster {}", path);
+				return null;
+			}
+			return new ResidentClassRaster(map(channel, width, height), width, shift);
+		}
+	}
+
+	static ResidentClassRaster build(
+			Path path,
+			int sourceWidth,
+			int sourceHeight,
+			int tileWidth,
+			int tileHeight,
+			int shift,
+			TileReader reader
+	) throws IOException {
+		int width = scaled(sourceWidth, shift);
+		int height = scaled(sourceHeight, shift);
+		if ((long) width * height > Integer.MAX_VALUE - HEADER_SIZE) {
+			throw new IOException("Koppen raster too large to keep resident");
+		}
+		int tilesPerRow = (sourceWidth + tileWidth - 1) / tileWidth;
+		int tilesPerColumn = (sourceHeight + tileHeight - 1) / tileHeight;
+		int step = 1 << shift;
+
+		Files.createDirectories(path.getParent());
+		Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(
+				tempPath,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING
+		)) {
+			byte[] strip = new byte[tileHeight * sourceWidth];
+			byte[] row = new byte[width];
+			for (int tileY = 0; tileY < tilesPerColumn; tileY++) {
+				int stripY = tileY * tileHeight;
+				int rows = Math.min(tileHeight, sourceHeight - stripY);
+				for (int tileX = 0; tileX < tilesPerRow; tileX++) {
+					byte[] tile = reader.read(tileY * tilesPerRow + tileX);
+					int stripX = tileX * tileWidth;
+					int columns = Math.min(tileWidth, sourceWidth - stripX);
+					for (int y = 0; y < rows; y++) {
+						System.arraycopy(tile, y * tileWidth, strip, y * sourceWidth + stripX, columns);
+					}
+				}
+				if (shift == 0) {
+					writeFully(channel, ByteBuffer.wrap(strip, 0, rows * sourceWidth), HEADER_SIZE + (long) stripY * width);
+					continue;
+				}
+				for (int y = 0; y < rows; y++) {
+					int sourceY = stripY + y;
+					if ((sourceY & (step - 1)) != 0) {
+						continue;
+					}
+					int rowStart = y * sourceWidth;
+					for (int x = 0; x < width; x++) {
+						row[x] = strip[rowStart + (x << shift)];
+					}
+					writeFully(channel, ByteBuffer.wrap(row), HEADER_SIZE + (long) (sourceY >> shift) * width);
+				}
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(sourceWidth).putInt(sourceHeight).putInt(shift);
+			header.clear();
+			writeFully(channel, header, 0);
+			channel.force(true);
+		}
+		Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new ResidentClassRaster(map(channel, width, height), width, shift);
+		}
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, int width, int height) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) width * height);
+	}
+
+	private static int scaled(int size, int shift) {
+		return (size + (1 << shift) - 1) >> shift;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+		long position = offset;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("Unexpected end of resident Koppen raster");
+			}
+			position += read;
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+		long position = offset;
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	interface TileReader {
+		byte[] read(int tileIndex) throws IOException;
+	}
+}
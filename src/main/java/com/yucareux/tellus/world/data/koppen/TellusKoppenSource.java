@@ -1,7 +1,9 @@
 package com.yucareux.tellus.world.data.koppen;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.yucareux.tellus.Tellus;
-import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -14,9 +16,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.zip.InflaterInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.util.Mth;
 
@@ -37,6 +43,9 @@ public final class TellusKoppenSource {
 	private static final long WARP_SEED_X = 0x243f6a8885a308d3L;
 	private static final long WARP_SEED_Z = 0x13198a2e03707344L;
 
+	private static final String RESIDENT_MODE = System.getProperty("tellus.koppen.resident", "off");
+	private static final ThreadLocal<int[]> SMOOTH_COUNTS = ThreadLocal.withInitial(() -> new int[31]);
+
 	private static final String[] KOPPEN_CODES = new String[31];
 
 	static {
@@ -79,6 +88,17 @@ public final class TellusKoppenSource {
 		this.cachePath = FabricLoader.getInstance().getGameDir()
 				.resolve("tellus/cache/koppen/koppen_geiger_0p00833333.tif");
 		this.raster = loadRaster();
+		int shift = switch (RESIDENT_MODE) {
+			case "full" -> 0;
+			case "half" -> 1;
+			default -> -1;
+		};
+		if (shift >= 0 && this.raster != GeoTiffRaster.MISSING) {
+			Thread loader = new Thread(() -> loadResident(shift), "tellus-koppen-resident");
+			loader.setDaemon(true);
+			loader.setPriority(Thread.MIN_PRIORITY);
+			loader.start();
+		}
 	}
 
 	public String sampleDitheredCode(double blockX, double blockZ, double worldScale) {
@@ -86,40 +106,52 @@ public final class TellusKoppenSource {
 	}
 
 	public String sampleRawCode(double blockX, double blockZ, double worldScale) {
-		Pixel center = toPixel(blockX, blockZ, worldScale);
+		GeoTiffRaster raster = rasterFor(worldScale);
+		Pixel center = toPixel(raster, blockX, blockZ, worldScale);
 		if (center == null) {
 			return null;
 		}
 		if (this.raster == GeoTiffRaster.MISSING) {
 			return null;
 		}
-		return this.raster.sample(center);
+		return raster.sample(center);
 	}
 
 	public String sampleSmoothedCode(double blockX, double blockZ, double worldScale) {
-		Pixel center = toPixel(blockX, blockZ, worldScale);
+		GeoTiffRaster raster = rasterFor(worldScale);
+		Pixel center = toPixel(raster, blockX, blockZ, worldScale);
 		if (center == null) {
 			return null;
 		}
 		if (this.raster == GeoTiffRaster.MISSING) {
 			return null;
 		}
-		return this.raster.sampleSmoothed(center, SMOOTH_RADIUS_PIXELS);
+		return raster.sampleSmoothed(center, SMOOTH_RADIUS_PIXELS);
 	}
 
 	public String findNearestCode(double blockX, double blockZ, double worldScale) {
-		Pixel center = toPixel(blockX, blockZ, worldScale);
+		GeoTiffRaster raster = rasterFor(worldScale);
+		Pixel center = toPixel(raster, blockX, blockZ, worldScale);
 		if (center == null) {
 			return null;
 		}
 		if (this.raster == GeoTiffRaster.MISSING) {
 			return null;
 		}
-		int radius = this.raster.radiusForMeters(SEARCH_RADIUS_METERS);
-		return this.raster.findNearest(center, radius);
+		int radius = raster.radiusForMeters(SEARCH_RADIUS_METERS);
+		return raster.findNearest(center, radius);
+	}
+
+	private GeoTiffRaster rasterFor(double worldScale) {
+		double pixelSize = this.raster.pixelSizeMeters();
+		if (pixelSize <= 0.0) {
+			return this.raster;
+		}
+		double pixelsPerBlock = worldScale / pixelSize;
+		return pixelsPerBlock > DOWNSAMPLE_START_PIXELS ? this.raster.level(pixelsPerBlock) : this.raster;
 	}
 
-	private Pixel toPixel(double blockX, double blockZ, double worldScale) {
+	private Pixel toPixel(GeoTiffRaster raster, double blockX, double blockZ, double worldScale) {
 		if (worldScale <= 0.0) {
 			return null;
 		}
@@ -138,7 +170,7 @@ public final class TellusKoppenSource {
 		if (lat < MIN_LAT || lat > MAX_LAT || lon < MIN_LON || lon > MAX_LON) {
 			return null;
 		}
-		return this.raster.toPixel(lon, lat);
+		return raster.toPixel(lon, lat);
 	}
 
 	private static int downsampleStep(double worldScale, double resolutionMeters) {
@@ -231,6 +263,34 @@ public final class TellusKoppenSource {
 		}
 	}
 
+	private void loadResident(int shift) {
+		Path path = this.cachePath.resolveSibling(this.cachePath.getFileName() + (shift == 0 ? ".classes" : ".classes2"));
+		GeoTiffRaster raster = this.raster;
+		try {
+			ResidentClassRaster resident = ResidentClassRaster.open(path, raster.width, raster.height, shift);
+			if (resident == null) {
+				long start = System.nanoTime();
+				resident = ResidentClassRaster.build(
+						path,
+						raster.width,
+						raster.height,
+						raster.tileWidth,
+						raster.tileHeight,
+						shift,
+						raster::readTile
+				);
+				Tellus.LOGGER.info(
+						"Built resident Koppen raster {} in {} ms",
+						path,
+						(System.nanoTime() - start) / 1_000_000L
+				);
+			}
+			raster.resident = resident;
+		} catch (IOException e) {
+			Tellus.LOGGER.warn("Failed to load resident Koppen raster {}", path, e);
+		}
+	}
+
 	private void cacheRaster() {
 		try (InputStream input = TellusKoppenSource.class.getClassLoader().getResourceAsStream(RESOURCE_PATH)) {
 			if (input == null) {
@@ -253,6 +313,7 @@ public final class TellusKoppenSource {
 	}
 
 	private static final class GeoTiffRaster {
+		private static final int TAG_NEW_SUBFILE_TYPE = 254;
 		private static final int TAG_IMAGE_WIDTH = 256;
 		private static final int TAG_IMAGE_HEIGHT = 257;
 		private static final int TAG_TILE_WIDTH = 322;
@@ -268,7 +329,30 @@ public final class TellusKoppenSource {
 
 		private static final int COMPRESSION_LZW = 5;
 		private static final int COMPRESSION_DEFLATE = 8;
-		private static final int MAX_TILE_CACHE = 64;
+		private static final long MAX_TILE_CACHE_BYTES = 32L * 1024L * 1024L;
+		private static final int TILE_OVERHEAD_BYTES = 64;
+		private static final long MAX_NEAREST_CACHE_BYTES = 16L * 1024L * 1024L;
+		private static final int SUBFILE_MASK = 4;
+		private static final int MAX_IFDS = 32;
+
+		private static final Cache<DecodedTileKey, byte[]> DECODED_TILES = CacheBuilder.newBuilder()
+				.maximumWeight(MAX_TILE_CACHE_BYTES)
+				.weigher((DecodedTileKey key, byte[] tile) -> tile.length + TILE_OVERHEAD_BYTES)
+				.concurrencyLevel(Runtime.getRuntime().availableProcessors())
+				.build();
+
+		private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+		private static final int LZW_CLEAR_CODE = 256;
+		private static final int LZW_END_CODE = 257;
+		private static final int LZW_FIRST_CODE = 258;
+		private static final int LZW_TABLE_SIZE = 4096;
+		private static final ThreadLocal<LzwTable> LZW_TABLE = ThreadLocal.withInitial(LzwTable::new);
+
+		private static final Cache<NearestTileKey, byte[]> NEAREST_TILES = CacheBuilder.newBuilder()
+				.maximumWeight(MAX_NEAREST_CACHE_BYTES)
+				.weigher((NearestTileKey key, byte[] tile) -> tile.length + TILE_OVERHEAD_BYTES)
+				.concurrencyLevel(Runtime.getRuntime().availableProcessors())
+				.build();
 
 		private static final GeoTiffRaster MISSING = new GeoTiffRaster();
 
@@ -287,7 +371,9 @@ public final class TellusKoppenSource {
 		private final double tieLon;
 		private final double tieLat;
 		private final double pixelSizeMeters;
-		private final Map<Integer, byte[]> tileCache;
+		private final double factor;
+		private final GeoTiffRaster[] overviews;
+		private volatile ResidentClassRaster resident;
 
 		private GeoTiffRaster() {
 			this.path = null;
@@ -305,7 +391,8 @@ public final class TellusKoppenSource {
 			this.tieLon = 0.0;
 			this.tieLat = 0.0;
 			this.pixelSizeMeters = 0.0;
-			this.tileCache = Map.of();
+			this.factor = 1.0;
+			this.overviews = new GeoTiffRaster[0];
 		}
 
 		private GeoTiffRaster(
@@ -321,7 +408,9 @@ public final class TellusKoppenSource {
 				double pixelScaleX,
 				double pixelScaleY,
 				double tieLon,
-				double tieLat
+				double tieLat,
+				double factor,
+				GeoTiffRaster[] overviews
 		) {
 			this.path = path;
 			this.channel = channel;
@@ -338,12 +427,8 @@ public final class TellusKoppenSource {
 			this.tieLon = tieLon;
 			this.tieLat = tieLat;
 			this.pixelSizeMeters = Math.abs(pixelScaleX) * (EQUATOR_CIRCUMFERENCE / 360.0);
-			this.tileCache = new LinkedHashMap<>(MAX_TILE_CACHE, 0.75f, true) {
-				@Override
-				protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
-					return size() > MAX_TILE_CACHE;
-				}
-			};
+			this.factor = factor;
+			this.overviews = overviews;
 		}
 
 		static GeoTiffRaster open(Path path) throws IOException {
@@ -356,6 +441,17 @@ public final class TellusKoppenSource {
 			}
 		}
 
+		GeoTiffRaster level(double maxFactor) {
+			GeoTiffRaster selected = this;
+			for (GeoTiffRaster overview : this.overviews) {
+				if (overview.factor > maxFactor) {
+					break;
+				}
+				selected = overview;
+			}
+			return selected;
+		}
+
 		Pixel toPixel(double lon, double lat) {
 			if (this == MISSING) {
 				return null;
@@ -372,7 +468,8 @@ public final class TellusKoppenSource {
 			if (center == null || radius <= 0) {
 				return sample(center);
 			}
-			int[] counts = new int[KOPPEN_CODES.length];
+			int[] counts = SMOOTH_COUNTS.get();
+			Arrays.fill(counts, 0);
 			int centerValue = sampleValue(center.x, center.y);
 			for (int dy = -radius; dy <= radius; dy++) {
 				for (int dx = -radius; dx <= radius; dx++) {
@@ -405,29 +502,109 @@ public final class TellusKoppenSource {
 		}
 
 		String findNearest(Pixel center, int radius) {
-			if (center == null || radius <= 0) {
+			if (center == null || radius <= 0 || this == MISSING) {
 				return null;
 			}
-			int bestValue = 0;
-			int bestDist = Integer.MAX_VALUE;
-			int maxDist = radius * radius;
-			for (int dy = -radius; dy <= radius; dy++) {
-				for (int dx = -radius; dx <= radius; dx++) {
-					int dist = dx * dx + dy * dy;
-					if (dist > maxDist) {
-						continue;
+			int tileX = center.x / this.tileWidth;
+			int tileY = center.y / this.tileHeight;
+			int tileIndex = tileY * this.tilesPerRow + tileX;
+			byte[] nearest;
+			try {
+				nearest = NEAREST_TILES.get(
+						new NearestTileKey(this, tileIndex, radius),
+						() -> buildNearestTile(tileX, tileY, radius)
+				);
+			} catch (ExecutionException | UncheckedExecutionException e) {
+				Tellus.LOGGER.warn("Failed to build nearest Koppen tile {} in {}", tileIndex, this.path, e.getCause());
+				return null;
+			}
+			int localX = center.x - tileX * this.tileWidth;
+			int localY = center.y - tileY * this.tileHeight;
+			int value = nearest[localX + localY * this.tileWidth];
+			return value > 0 ? KOPPEN_CODES[value] : null;
+		}
+
+		private byte[] buildNearestTile(int tileX, int tileY, int radius) {
+			int width = this.tileWidth + radius * 2;
+			int height = this.tileHeight + radius * 2;
+			int originX = tileX * this.tileWidth - radius;
+			int originY = tileY * this.tileHeight - radius;
+			byte[] classes = new byte[width * height];
+			int[] sites = new int[width * height];
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					int index = y * width + x;
+					int value = sampleValue(originX + x, originY + y);
+					boolean valid = value > 0 && value < KOPPEN_CODES.length;
+					classes[index] = (byte) value;
+					sites[index] = valid ? index : -1;
+				}
+			}
+
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					int index = y * width + x;
+					if (x > 0) {
+						relaxSite(sites, width, index, index - 1);
 					}
-					int value = sampleValue(center.x + dx, center.y + dy);
-					if (value <= 0 || value >= KOPPEN_CODES.length) {
-						continue;
+					if (y > 0) {
+						relaxSite(sites, width, index, index - width);
+						if (x > 0) {
+							relaxSite(sites, width, index, index - width - 1);
+						}
+						if (x + 1 < width) {
+							relaxSite(sites, width, index, index - width + 1);
+						}
 					}
-					if (dist < bestDist) {
-						bestDist = dist;
-						bestValue = value;
+				}
+			}
+			for (int y = height - 1; y >= 0; y--) {
+				for (int x = width - 1; x >= 0; x--) {
+					int index = y * width + x;
+					if (x + 1 < width) {
+						relaxSite(sites, width, index, index + 1);
+					}
+					if (y + 1 < height) {
+						relaxSite(sites, width, index, index + width);
+						if (x + 1 < width) {
+							relaxSite(sites, width, index, index + width + 1);
+						}
+						if (x > 0) {
+							relaxSite(sites, width, index, index + width - 1);
+						}
 					}
 				}
 			}
-			return bestValue > 0 ? KOPPEN_CODES[bestValue] : null;
+
+			byte[] nearest = new byte[this.tileWidth * this.tileHeight];
+			int maxDist = radius * radius;
+			for (int y = 0; y < this.tileHeight; y++) {
+				for (int x = 0; x < this.tileWidth; x++) {
+					int index = (y + radius) * width + x + radius;
+					int site = sites[index];
+					if (site >= 0 && siteDistance(width, index, site) <= maxDist) {
+						nearest[y * this.tileWidth + x] = classes[site];
+					}
+				}
+			}
+			return nearest;
+		}
+
+		private static void relaxSite(int[] sites, int width, int index, int neighbor) {
+			int candidate = sites[neighbor];
+			if (candidate < 0) {
+				return;
+			}
+			int current = sites[index];
+			if (current < 0 || siteDistance(width, index, candidate) < siteDistance(width, index, current)) {
+				sites[index] = candidate;
+			}
+		}
+
+		private static int siteDistance(int width, int index, int site) {
+			int dx = index % width - site % width;
+			int dy = index / width - site / width;
+			return dx * dx + dy * dy;
 		}
 
 		int radiusForMeters(double meters) {
@@ -459,6 +636,10 @@ public final class TellusKoppenSource {
 			if (pixelX < 0 || pixelY < 0 || pixelX >= this.width || pixelY >= this.height) {
 				return 0;
 			}
+			ResidentClassRaster resident = this.resident;
+			if (resident != null) {
+				return resident.get(pixelX, pixelY);
+			}
 			int tileX = pixelX / this.tileWidth;
 			int tileY = pixelY / this.tileHeight;
 			int tileIndex = tileY * this.tilesPerRow + tileX;
@@ -481,17 +662,14 @@ public final class TellusKoppenSource {
 		}
 
 		private byte[] getTile(int tileIndex) throws IOException {
-			synchronized (this.tileCache) {
-				byte[] cached = this.tileCache.get(tileIndex);
-				if (cached != null) {
-					return cached;
+			try {
+				return DECODED_TILES.get(new DecodedTileKey(this, tileIndex), () -> readTile(tileIndex));
+			} catch (ExecutionException | UncheckedExecutionException e) {
+				if (e.getCause() instanceof IOException cause) {
+					throw cause;
 				}
+				throw new IOException("Failed to decode Koppen tile " + tileIndex, e.getCause());
 			}
-			byte[] tile = readTile(tileIndex);
-			synchronized (this.tileCache) {
-				this.tileCache.put(tileIndex, tile);
-			}
-			return tile;
 		}
 
 		private byte[] readTile(int tileIndex) throws IOException {
@@ -536,16 +714,89 @@ public final class TellusKoppenSource {
 				throw new IOException("Invalid TIFF magic");
 			}
 
-			int ifdOffset = header.getInt();
+			List<Ifd> ifds = new ArrayList<>();
+			long ifdOffset = Integer.toUnsignedLong(header.getInt());
+			while (ifdOffset != 0 && ifds.size() < MAX_IFDS) {
+				Ifd ifd = readIfd(channel, ifdOffset, byteOrder);
+				ifds.add(ifd);
+				ifdOffset = ifd.next();
+			}
+			if (ifds.isEmpty()) {
+				throw new IOException("Missing TIFF image directory");
+			}
+
+			Ifd base = ifds.get(0);
+			if (!isSupportedCompression(base.compression())) {
+				throw new IOException("Unsupported TIFF compression " + base.compression());
+			}
+			if (!base.hasTiles()) {
+				throw new IOException("Missing TIFF size tags");
+			}
+			if (base.tileOffsets() == null || base.tileByteCounts() == null) {
+				throw new IOException("Missing TIFF tile offsets");
+			}
+			double[] pixelScale = base.pixelScale();
+			double[] tiepoint = base.tiepoint();
+			if (pixelScale == null || pixelScale.length < 2 || tiepoint == null || tiepoint.length < 5) {
+				throw new IOException("Missing TIFF georeference tags");
+			}
+
+			List<GeoTiffRaster> overviews = new ArrayList<>();
+			for (int i = 1; i < ifds.size(); i++) {
+				Ifd ifd = ifds.get(i);
+				if (!ifd.isOverviewOf(base, SUBFILE_MASK)) {
+					continue;
+				}
+				overviews.add(new GeoTiffRaster(
+						path,
+						channel,
+						ifd.width(),
+						ifd.height(),
+						ifd.tileWidth(),
+						ifd.tileHeight(),
+						ifd.compression(),
+						ifd.tileOffsets(),
+						ifd.tileByteCounts(),
+						pixelScale[0] * base.width() / ifd.width(),
+						pixelScale[1] * base.height() / ifd.height(),
+						tiepoint[3],
+						tiepoint[4],
+						(double) base.width() / ifd.width(),
+						new GeoTiffRaster[0]
+				));
+			}
+			overviews.sort(Comparator.comparingDouble(overview -> overview.factor));
+
+			return new GeoTiffRaster(
+					path,
+					channel,
+					base.width(),
+					base.height(),
+					base.tileWidth(),
+					base.tileHeight(),
+					base.compression(),
+					base.tileOffsets(),
+					base.tileByteCounts(),
+					pixelScale[0],
+					pixelScale[1],
+					tiepoint[3],
+					tiepoint[4],
+					1.0,
+					overviews.toArray(new GeoTiffRaster[0])
+			);
+		}
+
+		private static Ifd readIfd(FileChannel channel, long ifdOffset, ByteOrder byteOrder) throws IOException {
 			ByteBuffer countBuffer = ByteBuffer.allocate(2).order(byteOrder);
 			readFully(channel, countBuffer, ifdOffset);
 			countBuffer.flip();
 			int entryCount = Short.toUnsignedInt(countBuffer.getShort());
 
-			ByteBuffer entries = ByteBuffer.allocate(entryCount * 12).order(byteOrder);
+			ByteBuffer entries = ByteBuffer.allocate(entryCount * 12 + 4).order(byteOrder);
 			readFully(channel, entries, ifdOffset + 2L);
 			entries.flip();
 
+			int subfileType = 0;
 			int width = -1;
 			int height = -1;
 			int tileWidth = -1;
@@ -562,36 +813,24 @@ public final class TellusKoppenSource {
 				int count = entries.getInt();
 				int value = entries.getInt();
 				switch (tag) {
+					case TAG_NEW_SUBFILE_TYPE -> subfileType = readIntValue(type, count, value, byteOrder);
 					case TAG_IMAGE_WIDTH -> width = readIntValue(type, count, value, byteOrder);
 					case TAG_IMAGE_HEIGHT -> height = readIntValue(type, count, value, byteOrder);
 					case TAG_TILE_WIDTH -> tileWidth = readIntValue(type, count, value, byteOrder);
 					case TAG_TILE_HEIGHT -> tileHeight = readIntValue(type, count, value, byteOrder);
 					case TAG_COMPRESSION -> compression = readIntValue(type, count, value, byteOrder);
-					case TAG_TILE_OFFSETS -> tileOffsets = readLongArray(channel, value, count, byteOrder);
-					case TAG_TILE_BYTE_COUNTS -> tileByteCounts = readIntArray(channel, value, count, byteOrder);
+					case TAG_TILE_OFFSETS -> tileOffsets = readLongArray(channel, type, value, count, byteOrder);
+					case TAG_TILE_BYTE_COUNTS -> tileByteCounts = readIntArray(channel, type, value, count, byteOrder);
 					case TAG_MODEL_PIXEL_SCALE -> pixelScale = readDoubleArray(channel, value, count, byteOrder);
 					case TAG_MODEL_TIEPOINT -> tiepoint = readDoubleArray(channel, value, count, byteOrder);
 					default -> {
 					}
 				}
 			}
+			long next = Integer.toUnsignedLong(entries.getInt());
 
-			if (compression != COMPRESSION_DEFLATE && compression != COMPRESSION_LZW) {
-				throw new IOException("Unsupported TIFF compression " + compression);
-			}
-			if (width <= 0 || height <= 0 || tileWidth <= 0 || tileHeight <= 0) {
-				throw new IOException("Missing TIFF size tags");
-			}
-			if (tileOffsets == null || tileByteCounts == null) {
-				throw new IOException("Missing TIFF tile offsets");
-			}
-			if (pixelScale == null || pixelScale.length < 2 || tiepoint == null || tiepoint.length < 5) {
-				throw new IOException("Missing TIFF georeference tags");
-			}
-
-			return new GeoTiffRaster(
-					path,
-					channel,
+			return new Ifd(
+					subfileType,
 					width,
 					height,
 					tileWidth,
@@ -599,13 +838,16 @@ public final class TellusKoppenSource {
 					compression,
 					tileOffsets,
 					tileByteCounts,
-					pixelScale[0],
-					pixelScale[1],
-					tiepoint[3],
-					tiepoint[4]
+					pixelScale,
+					tiepoint,
+					next
 			);
 		}
 
+		private static boolean isSupportedCompression(int compression) {
+			return compression == COMPRESSION_DEFLATE || compression == COMPRESSION_LZW;
+		}
+
 		private static int readIntValue(int type, int count, int value, ByteOrder order) throws IOException {
 			if (count != 1) {
 				throw new IOException("Expected single TIFF value");
@@ -622,32 +864,36 @@ public final class TellusKoppenSource {
 			throw new IOException("Unsupported TIFF value type " + type);
 		}
 
-		private static long[] readLongArray(FileChannel channel, long offset, int count, ByteOrder order) throws IOException {
+		private static long[] readLongArray(FileChannel channel, int type, int value, int count, ByteOrder order)
+				throws IOException {
 			if (count <= 0) {
 				return new long[0];
 			}
-			ByteBuffer buffer = ByteBuffer.allocate(count * 4).order(order);
-			readFully(channel, buffer, offset);
+			int size = type == TYPE_SHORT ? Short.BYTES : Integer.BYTES;
+			ByteBuffer buffer = ByteBuffer.allocate(count * size).order(order);
+			if (count * size <= Integer.BYTES) {
+				ByteBuffer inline = ByteBuffer.allocate(Integer.BYTES).order(order);
+				inline.putInt(value);
+				buffer.put(inline.array(), 0, count * size);
+			} else {
+				readFully(channel, buffer, Integer.toUnsignedLong(value));
+			}
 			buffer.flip();
 			long[] values = new long[count];
 			for (int i = 0; i < count; i++) {
-				values[i] = Integer.toUnsignedLong(buffer.getInt());
+				values[i] = size == Short.BYTES ? Short.toUnsignedInt(buffer.getShort()) : Integer.toUnsignedLong(buffer.getInt());
 			}
 			return values;
 		}
 
-		private static int[] readIntArray(FileChannel channel, long offset, int count, ByteOrder order) throws IOException {
-			if (count <= 0) {
-				return new int[0];
-			}
-			ByteBuffer buffer = ByteBuffer.allocate(count * 4).order(order);
-			readFully(channel, buffer, offset);
-			buffer.flip();
-			int[] values = new int[count];
-			for (int i = 0; i < count; i++) {
-				values[i] = buffer.getInt();
+		private static int[] readIntArray(FileChannel channel, int type, int value, int count, ByteOrder order)
+				throws IOException {
+			long[] values = readLongArray(channel, type, value, count, order);
+			int[] ints = new int[values.length];
+			for (int i = 0; i < values.length; i++) {
+				ints[i] = (int) values[i];
 			}
-			return values;
+			return ints;
 		}
 
 		private static double[] readDoubleArray(FileChannel channel, long offset, int count, ByteOrder order) throws IOException {
@@ -681,83 +927,93 @@ public final class TellusKoppenSource {
 
 		private static byte[] inflate(byte[] compressed, int expectedSize) throws IOException {
 			byte[] output = new byte[expectedSize];
-			try (InflaterInputStream inflater = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
-				int offset = 0;
+			Inflater inflater = INFLATER.get();
+			inflater.reset();
+			inflater.setInput(compressed);
+			int offset = 0;
+			try {
 				while (offset < expectedSize) {
-					int read = inflater.read(output, offset, expectedSize - offset);
-					if (read < 0) {
+					int read = inflater.inflate(output, offset, expectedSize - offset);
+					if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
 						break;
 					}
 					offset += read;
 				}
-				if (offset != expectedSize) {
-					throw new IOException("Unexpected inflated data length");
-				}
-				return output;
+			} catch (DataFormatException e) {
+				throw new IOException("Invalid deflate data", e);
 			}
+			if (offset != expectedSize) {
+				throw new IOException("Unexpected inflated data length");
+			}
+			return output;
 		}
 
 		private static byte[] decompressLzw(byte[] compressed, int expectedSize) throws IOException {
-			byte[][] table = new byte[4096][];
-			for (int i = 0; i < 256; i++) {
-				table[i] = new byte[] { (byte) i };
-			}
+			LzwTable table = LZW_TABLE.get();
+			int[] offsets = table.offsets;
+			int[] lengths = table.lengths;
 
-			int clearCode = 256;
-			int endCode = 257;
 			int codeSize = 9;
-			int nextCode = 258;
+			int nextCode = LZW_FIRST_CODE;
 			byte[] output = new byte[expectedSize];
 			int outPos = 0;
 
 			LzwBitReader reader = new LzwBitReader(compressed);
-			byte[] previous = null;
+			int previous = -1;
+			int previousPos = 0;
 
 			while (true) {
 				int code = reader.read(codeSize);
 				if (code < 0) {
 					break;
 				}
-				if (code == clearCode) {
-					for (int i = 0; i < 256; i++) {
-						table[i] = new byte[] { (byte) i };
-					}
-					for (int i = 256; i < table.length; i++) {
-						table[i] = null;
-					}
+				if (code == LZW_CLEAR_CODE) {
 					codeSize = 9;
-					nextCode = 258;
-					previous = null;
+					nextCode = LZW_FIRST_CODE;
+					previous = -1;
 					continue;
 				}
-				if (code == endCode) {
+				if (code == LZW_END_CODE) {
 					break;
 				}
 
-				byte[] entry;
-				if (code < nextCode && table[code] != null) {
-					entry = table[code];
-				} else if (code == nextCode && previous != null) {
-					entry = concat(previous, previous[0]);
+				int length;
+				if (code < LZW_CLEAR_CODE) {
+					length = 1;
+					if (outPos + length > output.length) {
+						throw new IOException("Unexpected LZW output size");
+					}
+					output[outPos] = (byte) code;
+				} else if (code >= LZW_FIRST_CODE && code < nextCode) {
+					length = lengths[code];
+					if (outPos + length > output.length) {
+						throw new IOException("Unexpected LZW output size");
+					}
+					System.arraycopy(output, offsets[code], output, outPos, length);
+				} else if (code == nextCode && previous >= 0) {
+					length = lengths[previous] + 1;
+					if (outPos + length > output.length) {
+						throw new IOException("Unexpected LZW output size");
+					}
+					System.arraycopy(output, previousPos, output, outPos, length - 1);
+					output[outPos + length - 1] = output[previousPos];
 				} else {
 					throw new IOException("Invalid LZW code " + code);
 				}
 
-				if (outPos + entry.length > output.length) {
-					throw new IOException("Unexpected LZW output size");
-				}
-				System.arraycopy(entry, 0, output, outPos, entry.length);
-				outPos += entry.length;
-
-				if (previous != null && nextCode < table.length) {
-					table[nextCode++] = concat(previous, entry[0]);
+				if (previous >= 0 && nextCode < LZW_TABLE_SIZE) {
+					offsets[nextCode] = previousPos;
+					lengths[nextCode] = lengths[previous] + 1;
+					nextCode++;
 					int threshold = (1 << codeSize) - 1;
 					if (nextCode == threshold && codeSize < 12) {
 						codeSize++;
 					}
 				}
 
-				previous = entry;
+				previous = code;
+				previousPos = outPos;
+				outPos += length;
 				if (outPos == output.length) {
 					break;
 				}
@@ -769,36 +1025,74 @@ public final class TellusKoppenSource {
 			return output;
 		}
 
-		private static byte[] concat(byte[] prefix, byte suffix) {
-			byte[] combined = new byte[prefix.length + 1];
-			System.arraycopy(prefix, 0, combined, 0, prefix.length);
-			combined[prefix.length] = suffix;
-			return combined;
+		private record DecodedTileKey(GeoTiffRaster raster, int tileIndex) {
+		}
+
+		private record NearestTileKey(GeoTiffRaster raster, int tileIndex, int radius) {
+		}
+
+		private record Ifd(
+				int subfileType,
+				int width,
+				int height,
+				int tileWidth,
+				int tileHeight,
+				int compression,
+				long[] tileOffsets,
+				int[] tileByteCounts,
+				double[] pixelScale,
+				double[] tiepoint,
+				long next
+		) {
+			boolean hasTiles() {
+				return this.width > 0 && this.height > 0 && this.tileWidth > 0 && this.tileHeight > 0;
+			}
+
+			boolean isOverviewOf(Ifd base, int maskFlag) {
+				if ((this.subfileType & maskFlag) != 0 || !isSupportedCompression(this.compression) || !hasTiles()) {
+					return false;
+				}
+				if (this.tileOffsets == null || this.tileByteCounts == null) {
+					return false;
+				}
+				int tiles = ((this.width + this.tileWidth - 1) / this.tileWidth)
+						* ((this.height + this.tileHeight - 1) / this.tileHeight);
+				if (this.tileOffsets.length < tiles || this.tileByteCounts.length < tiles) {
+					return false;
+				}
+				return this.width < base.width && this.height < base.height;
+			}
+		}
+
+		private static final class LzwTable {
+			private final int[] offsets = new int[LZW_TABLE_SIZE];
+			private final int[] lengths = new int[LZW_TABLE_SIZE];
+
+			private LzwTable() {
+				Arrays.fill(this.lengths, 0, LZW_CLEAR_CODE, 1);
+			}
 		}
 
 		private static final class LzwBitReader {
 			private final byte[] data;
-			private int bitPos;
+			private int position;
+			private int buffer;
+			private int bufferedBits;
 
 			private LzwBitReader(byte[] data) {
 				this.data = data;
 			}
 
 			private int read(int bits) {
-				int totalBits = this.data.length * 8;
-				if (this.bitPos + bits > totalBits) {
-					return -1;
-				}
-				int value = 0;
-				for (int i = 0; i < bits; i++) {
-					int offset = this.bitPos + i;
-					int byteIndex = offset >> 3;
-					int bitIndex = 7 - (offset & 7);
-					int current = this.data[byteIndex] & 0xFF;
-					value = (value << 1) | ((current >> bitIndex) & 1);
+				while (this.bufferedBits < bits) {
+					if (this.position >= this.data.length) {
+						return -1;
+					}
+					this.buffer = (this.buffer << 8) | (this.data[this.position++] & 0xFF);
+					this.bufferedBits += 8;
 				}
-				this.bitPos += bits;
-				return value;
+				this.bufferedBits -= bits;
+				return (this.buffer >>> this.bufferedBits) & ((1 << bits) - 1);
 			}
 		}
 	}
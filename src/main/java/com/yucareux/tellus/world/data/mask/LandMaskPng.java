@@ -0,0 +1,203 @@
+package com.yucareux.tellus.world.data.mask;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import org.jspecify.annotations.Nullable;
+
+final class LandMaskPng {
+	private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+	private static final int IHDR = 0x49484452;
+	private static final int IDAT = 0x49444154;
+	private static final int IEND = 0x49454E44;
+	private static final int MAX_DIMENSION = 4096;
+	private static final ThreadLocal<DecodeScratch> SCRATCH = ThreadLocal.withInitial(DecodeScratch::new);
+
+	private LandMaskPng() {
+	}
+
+	static @Nullable Mask decode(byte[] png) throws IOException {
+		if (png.length < 33 || readLong(png, 0) != SIGNATURE || readInt(png, 12) != IHDR) {
+			throw new IOException("Invalid land mask tile image");
+		}
+		int width = readInt(png, 16);
+		int height = readInt(png, 20);
+		int bitDepth = png[24] & 0xFF;
+		int colorType = png[25] & 0xFF;
+		int interlace = png[28] & 0xFF;
+		int channels = channels(colorType);
+		if (width <= 0 || height <= 0 || width > MAX_DIMENSION || height > MAX_DIMENSION) {
+			throw new IOException("Invalid land mask tile size " + width + "x" + height);
+		}
+		if (channels == 0 || interlace != 0 || !validDepth(colorType, bitDepth)) {
+			return null;
+		}
+		int bitsPerPixel = channels * bitDepth;
+		int rowBytes = (width * bitsPerPixel + 7) >>> 3;
+		int stride = rowBytes + 1;
+		int rawLength = stride * height;
+
+		DecodeScratch scratch = SCRATCH.get();
+		byte[] raw = scratch.buffer(rawLength);
+		inflate(scratch.inflater, png, raw, rawLength);
+		unfilter(raw, stride, height, Math.max(1, bitsPerPixel >>> 3));
+
+		long[] bits = new long[(width * height + 63) >>> 6];
+		int landCount = 0;
+		int pixelBytes = bitsPerPixel >>> 3;
+		for (int y = 0; y < height; y++) {
+			int row = y * stride + 1;
+			int base = y * width;
+			for (int x = 0; x < width; x++) {
+				boolean land;
+				if (bitDepth < 8) {
+					int bit = x * bitDepth;
+					int sample = (raw[row + (bit >>> 3)] >>> (8 - bitDepth - (bit & 7))) & ((1 << bitDepth) - 1);
+					land = sample != 0;
+				} else if (bitDepth == 8) {
+					land = raw[row + x * pixelBytes] != 0;
+				} else {
+					int offset = row + x * pixelBytes;
+					land = (raw[offset] | raw[offset + 1]) != 0;
+				}
+				if (land) {
+					int index = base + x;
+					bits[index >>> 6] |= 1L << index;
+					landCount++;
+				}
+			}
+		}
+		return new Mask(width, height, bits, landCount);
+	}
+
+	private static void inflate(Inflater inflater, byte[] png, byte[] raw, int rawLength) throws IOException {
+		inflater.reset();
+		int produced = 0;
+		int position = 8;
+		try {
+			while (position + 8 <= png.length && produced < rawLength) {
+				int length = readInt(png, position);
+				int type = readInt(png, position + 4);
+				int dataStart = position + 8;
+				if (length < 0 || dataStart + length > png.length) {
+					throw new IOException("Truncated land mask tile image");
+				}
+				if (type == IEND) {
+					break;
+				}
+				if (type == IDAT) {
+					inflater.setInput(png, dataStart, length);
+					while (!inflater.needsInput() && !inflater.finished() && produced < rawLength) {
+						int count = inflater.inflate(raw, produced, rawLength - produced);
+						if (count == 0 && inflater.needsDictionary()) {
+							throw new IOException("Unsupported land mask tile compression");
+						}
+						produced += count;
+					}
+				}
+				position = dataStart + length + 4;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt land mask tile image", e);
+		}
+		if (produced < rawLength) {
+			throw new IOException("Truncated land mask tile image data");
+		}
+	}
+
+	private static void unfilter(byte[] raw, int stride, int height, int bytesPerPixel) throws IOException {
+		int rowBytes = stride - 1;
+		for (int y = 0; y < height; y++) {
+			int row = y * stride + 1;
+			int prior = row - stride;
+			int filter = raw[row - 1];
+			switch (filter) {
+				case 0 -> {
+				}
+				case 1 -> {
+					for (int i = bytesPerPixel; i < rowBytes; i++) {
+						raw[row + i] += raw[row + i - bytesPerPixel];
+					}
+				}
+				case 2 -> {
+					if (y > 0) {
+						for (int i = 0; i < rowBytes; i++) {
+							raw[row + i] += raw[prior + i];
+						}
+					}
+				}
+				case 3 -> {
+					for (int i = 0; i < rowBytes; i++) {
+						int left = i >= bytesPerPixel ? raw[row + i - bytesPerPixel] & 0xFF : 0;
+						int up = y > 0 ? raw[prior + i] & 0xFF : 0;
+						raw[row + i] += (byte) ((left + up) >>> 1);
+					}
+				}
+				case 4 -> {
+					for (int i = 0; i < rowBytes; i++) {
+						int left = i >= bytesPerPixel ? raw[row + i - bytesPerPixel] & 0xFF : 0;
+						int up = y > 0 ? raw[prior + i] & 0xFF : 0;
+						int upLeft = y > 0 && i >= bytesPerPixel ? raw[prior + i - bytesPerPixel] & 0xFF : 0;
+						raw[row + i] += (byte) paeth(left, up, upLeft);
+					}
+				}
+				default -> throw new IOException("Invalid PNG filter " + filter);
+			}
+		}
+	}
+
+	private static int paeth(int left, int up, int upLeft) {
+		int estimate = left + up - upLeft;
+		int distanceLeft = Math.abs(estimate - left);
+		int distanceUp = Math.abs(estimate - up);
+		int distanceUpLeft = Math.abs(estimate - upLeft);
+		if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft) {
+			return left;
+		}
+		return distanceUp <= distanceUpLeft ? up : upLeft;
+	}
+
+	private static int channels(int colorType) {
+		return switch (colorType) {
+			case 0, 3 -> 1;
+			case 2 -> 3;
+			case 4 -> 2;
+			case 6 -> 4;
+			default -> 0;
+		};
+	}
+
+	private static boolean validDepth(int colorType, int bitDepth) {
+		return switch (colorType) {
+			case 0 -> bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16;
+			case 3 -> bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8;
+			default -> bitDepth == 8 || bitDepth == 16;
+		};
+	}
+
+	private static int readInt(byte[] buffer, int pos) {
+		return ((buffer[pos] & 0xFF) << 24)
+				| ((buffer[pos + 1] & 0xFF) << 16)
+				| ((buffer[pos + 2] & 0xFF) << 8)
+				| (buffer[pos + 3] & 0xFF);
+	}
+
+	private static long readLong(byte[] buffer, int pos) {
+		return ((long) readInt(buffer, pos) << 32) | (readInt(buffer, pos + 4) & 0xFFFFFFFFL);
+	}
+
+	record Mask(int width, int height, long[] bits, int landCount) {
+	}
+
+	private static final class DecodeScratch {
+		private final Inflater inflater = new Inflater();
+		private byte[] buffer = new byte[0];
+
+		private byte[] buffer(int length) {
+			if (this.buffer.length < length) {
+				this.buffer = new byte[length];
+			}
+			return this.buffer;
+		}
+	}
+}
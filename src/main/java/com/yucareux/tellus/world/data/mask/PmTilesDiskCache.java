@@ -0,0 +1,180 @@
+package com.yucareux.tellus.world.data.mask;
+
+import com.yucareux.tellus.Tellus;
+import com.yucareux.tellus.world.data.cache.TileArchive;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.Properties;
+import org.jspecify.annotations.Nullable;
+
+final class PmTilesDiskCache {
+	private static final String INDEX_FILE = "archives.properties";
+	private static final int RANGE_ZOOM = 24;
+	private static final long RANGE_MASK = (1L << RANGE_ZOOM) - 1;
+	private static final int MAX_NAME_LENGTH = 80;
+	private static final byte[] ABSENT = new byte[0];
+
+	private final Path root;
+	private final String url;
+	private volatile @Nullable Bound bound;
+
+	PmTilesDiskCache(Path root, String url) {
+		this.root = Objects.requireNonNull(root, "root");
+		this.url = Objects.requireNonNull(url, "url");
+	}
+
+	synchronized @Nullable String storedIdentity() {
+		Properties index = readIndex();
+		return index.getProperty(this.url);
+	}
+
+	synchronized void bind(String identity) {
+		Bound current = this.bound;
+		if (current != null && current.identity.equals(identity)) {
+			return;
+		}
+		Path directory = this.root.resolve(directoryName(identity));
+		try {
+			TileArchive ranges = TileArchive.open(directory.resolve("ranges"));
+			TileArchive tiles = TileArchive.open(directory.resolve("tiles"));
+			this.bound = new Bound(identity, ranges, tiles);
+		} catch (IOException e) {
+			this.bound = null;
+			Tellus.LOGGER.warn("Failed to open land mask disk cache {}", directory, e);
+			return;
+		}
+		Properties index = readIndex();
+		if (!identity.equals(index.getProperty(this.url))) {
+			if (index.getProperty(this.url) != null) {
+				Tellus.LOGGER.info("Land mask archive changed, caching under {}", directory);
+			}
+			index.setProperty(this.url, identity);
+			writeIndex(index);
+		}
+	}
+
+	byte @Nullable [] readRange(long offset, int length) {
+		Bound current = this.bound;
+		if (current == null || !isCacheableOffset(offset)) {
+			return null;
+		}
+		try {
+			byte[] bytes = current.ranges.readBytes(RANGE_ZOOM, rangeX(offset), rangeY(offset));
+			return bytes != null && bytes.length == length ? bytes : null;
+		} catch (IOException e) {
+			Tellus.LOGGER.debug("Failed to read cached land mask range {}", offset, e);
+			return null;
+		}
+	}
+
+	void writeRange(long offset, byte[] bytes) {
+		Bound current = this.bound;
+		if (current == null || !isCacheableOffset(offset)) {
+			return;
+		}
+		try {
+			current.ranges.write(RANGE_ZOOM, rangeX(offset), rangeY(offset), bytes);
+		} catch (IOException e) {
+			Tellus.LOGGER.debug("Failed to cache land mask range {}", offset, e);
+		}
+	}
+
+	byte @Nullable [] readTile(int z, int x, int y) {
+		Bound current = this.bound;
+		if (current == null) {
+			return null;
+		}
+		try {
+			byte[] bytes = current.tiles.readBytes(z, x, y);
+			return bytes != null && bytes.length == 0 ? ABSENT : bytes;
+		} catch (IOException e) {
+			Tellus.LOGGER.debug("Failed to read cached land mask tile {}/{}/{}", z, x, y, e);
+			return null;
+		}
+	}
+
+	void writeTile(int z, int x, int y, byte @Nullable [] bytes) {
+		Bound current = this.bound;
+		if (current == null) {
+			return;
+		}
+		try {
+			current.tiles.write(z, x, y, bytes != null ? bytes : ABSENT);
+		} catch (IOException e) {
+			Tellus.LOGGER.debug("Failed to cache land mask tile {}/{}/{}", z, x, y, e);
+		}
+	}
+
+	static boolean isAbsent(byte[] bytes) {
+		return bytes.length == 0;
+	}
+
+	private Properties readIndex() {
+		Properties index = new Properties();
+		Path path = this.root.resolve(INDEX_FILE);
+		if (!Files.exists(path)) {
+			return index;
+		}
+		try (InputStream input = Files.newInputStream(path)) {
+			index.load(input);
+		} catch (IOException e) {
+			Tellus.LOGGER.warn("Failed to read land mask cache index {}", path, e);
+		}
+		return index;
+	}
+
+	private void writeIndex(Properties index) {
+		Path path = this.root.resolve(INDEX_FILE);
+		Path tempPath = this.root.resolve(INDEX_FILE + ".tmp");
+		try {
+			Files.createDirectories(this.root);
+			try (OutputStream output = Files.newOutputStream(tempPath)) {
+				index.store(output, null);
+			}
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Tellus.LOGGER.warn("Failed to write land mask cache index {}", path, e);
+		}
+	}
+
+	private static String directoryName(String identity) {
+		String trimmed = identity;
+		if (trimmed.startsWith("W/")) {
+			trimmed = trimmed.substring(2);
+		}
+		StringBuilder name = new StringBuilder(Math.min(trimmed.length(), MAX_NAME_LENGTH));
+		for (int i = 0; i < trimmed.length() && name.length() < MAX_NAME_LENGTH; i++) {
+			char c = trimmed.charAt(i);
+			if (c == '"') {
+				continue;
+			}
+			boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+					|| c == '-' || c == '_' || c == '.';
+			name.append(safe ? c : '_');
+		}
+		if (name.isEmpty() || name.charAt(0) == '.') {
+			name.insert(0, "archive");
+		}
+		return name.toString();
+	}
+
+	private static boolean isCacheableOffset(long offset) {
+		return offset >= 0 && (offset >>> (RANGE_ZOOM * 2)) == 0;
+	}
+
+	private static int rangeX(long offset) {
+		return (int) (offset & RANGE_MASK);
+	}
+
+	private static int rangeY(long offset) {
+		return (int) (offset >>> RANGE_ZOOM);
+	}
+
+	private record Bound(String identity, TileArchive ranges, TileArchive tiles) {
+	}
+}
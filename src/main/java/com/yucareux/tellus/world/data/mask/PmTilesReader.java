@@ -4,34 +4,40 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.yucareux.tellus.Tellus;
+import com.yucareux.tellus.world.data.cache.TileId;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URI;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.zip.GZIPInputStream;
 import org.jspecify.annotations.Nullable;
 
 final class PmTilesReader {
 	private static final int HEADER_SIZE = 127;
 	private static final int MAX_DIRECTORY_DEPTH = 4;
+	private static final int RECENT_DIRECTORY_BITS = 6;
 	private static final int MAX_DIRECTORY_CACHE = intProperty("tellus.landmask.dirCache", 256);
-	private static final int READ_TIMEOUT_MS = 15000;
-	private static final int CONNECT_TIMEOUT_MS = 10000;
+	private static final int COALESCE_GAP_BYTES = 32 * 1024;
+	private static final int MAX_COALESCED_BYTES = 4 * 1024 * 1024;
+	private static final boolean REVALIDATE = Boolean.parseBoolean(System.getProperty("tellus.landmask.revalidate", "false"));
 
-	private final String url;
+	private final PmTilesSource source;
+	private final @Nullable PmTilesDiskCache diskCache;
 	private final LoadingCache<DirectoryKey, Directory> directoryCache;
-	private @Nullable PmTilesHeader header;
-	private @Nullable Directory rootDirectory;
+	private final AtomicReferenceArray<Directory> recentDirectories = new AtomicReferenceArray<>(1 << RECENT_DIRECTORY_BITS);
+	private volatile @Nullable PmTilesHeader header;
+	private volatile @Nullable Directory rootDirectory;
 
-	PmTilesReader(String url) {
-		this.url = Objects.requireNonNull(url, "url");
+	PmTilesReader(PmTilesSource source, @Nullable Path cacheRoot) {
+		this.source = Objects.requireNonNull(source, "source");
+		this.diskCache = cacheRoot != null && source.isRemote() ? new PmTilesDiskCache(cacheRoot, source.location()) : null;
 		this.directoryCache = CacheBuilder.newBuilder()
 				.maximumSize(MAX_DIRECTORY_CACHE)
 				.build(new CacheLoader<>() {
@@ -43,37 +49,144 @@ final class PmTilesReader {
 	}
 
 	PmTilesHeader header() throws IOException {
-		if (this.header == null) {
-			this.header = readHeader();
+		PmTilesHeader header = this.header;
+		if (header == null) {
+			header = readHeader();
+			this.header = header;
 		}
-		return this.header;
+		return header;
 	}
 
 	byte @Nullable [] getTileBytes(int z, int x, int y) throws IOException {
-		long tileId = zxyToTileId(z, x, y);
+		try {
+			return readTileBytes(z, x, y);
+		} catch (PmTilesSource.ArchiveChangedException e) {
+			reloadArchive(e.identity());
+			return readTileBytes(z, x, y);
+		}
+	}
+
+	byte @Nullable [][] getTileBytes(int z, int[] xs, int[] ys, int count) throws IOException {
+		try {
+			return readTileBytes(z, xs, ys, count);
+		} catch (PmTilesSource.ArchiveChangedException e) {
+			reloadArchive(e.identity());
+			return readTileBytes(z, xs, ys, count);
+		}
+	}
+
+	private byte @Nullable [] readTileBytes(int z, int x, int y) throws IOException {
+		PmTilesDiskCache diskCache = this.diskCache;
+		if (diskCache != null) {
+			byte[] cached = diskCache.readTile(z, x, y);
+			if (cached != null) {
+				return PmTilesDiskCache.isAbsent(cached) ? null : cached;
+			}
+		}
+		byte[] bytes = findTileBytes(z, x, y);
+		if (diskCache != null) {
+			diskCache.writeTile(z, x, y, bytes);
+		}
+		return bytes;
+	}
+
+	private byte @Nullable [][] readTileBytes(int z, int[] xs, int[] ys, int count) throws IOException {
+		PmTilesDiskCache diskCache = this.diskCache;
+		PmTilesHeader header = header();
+		byte[][] results = new byte[count][];
+		long[] offsets = new long[count];
+		int[] lengths = new int[count];
+		Integer[] pending = new Integer[count];
+		int pendingCount = 0;
+		for (int i = 0; i < count; i++) {
+			if (diskCache != null) {
+				byte[] cached = diskCache.readTile(z, xs[i], ys[i]);
+				if (cached != null) {
+					results[i] = PmTilesDiskCache.isAbsent(cached) ? null : cached;
+					continue;
+				}
+			}
+			long tileId = TileId.zxyToTileId(z, xs[i], ys[i]);
+			Directory directory = locateTile(tileId);
+			if (directory == null) {
+				if (diskCache != null) {
+					diskCache.writeTile(z, xs[i], ys[i], null);
+				}
+				continue;
+			}
+			int entry = directory.find(tileId);
+			offsets[i] = header.tileDataOffset + directory.offsets[entry];
+			lengths[i] = tileLength(directory, entry);
+			pending[pendingCount++] = i;
+		}
+		Arrays.sort(pending, 0, pendingCount, Comparator.comparingLong(index -> offsets[index]));
+
+		int start = 0;
+		while (start < pendingCount) {
+			long spanStart = offsets[pending[start]];
+			long spanEnd = spanStart + lengths[pending[start]];
+			int end = start + 1;
+			while (end < pendingCount) {
+				long nextStart = offsets[pending[end]];
+				long nextEnd = Math.max(spanEnd, nextStart + lengths[pending[end]]);
+				if (nextStart - spanEnd > COALESCE_GAP_BYTES || nextEnd - spanStart > MAX_COALESCED_BYTES) {
+					break;
+				}
+				spanEnd = nextEnd;
+				end++;
+			}
+			byte[] span = this.source.read(spanStart, (int) (spanEnd - spanStart));
+			for (int k = start; k < end; k++) {
+				int index = pending[k];
+				int from = (int) (offsets[index] - spanStart);
+				results[index] = Arrays.copyOfRange(span, from, from + lengths[index]);
+				if (diskCache != null) {
+					diskCache.writeTile(z, xs[index], ys[index], results[index]);
+				}
+			}
+			start = end;
+		}
+		return results;
+	}
+
+	private byte @Nullable [] findTileBytes(int z, int x, int y) throws IOException {
+		long tileId = TileId.zxyToTileId(z, x, y);
+		Directory directory = locateTile(tileId);
+		if (directory == null) {
+			return null;
+		}
+		int entry = directory.find(tileId);
+		return this.source.read(header().tileDataOffset + directory.offsets[entry], tileLength(directory, entry));
+	}
+
+	private @Nullable Directory locateTile(long tileId) throws IOException {
 		PmTilesHeader header = header();
 		Directory directory = getRootDirectory();
 
 		for (int depth = 0; depth < MAX_DIRECTORY_DEPTH; depth++) {
-			Entry entry = findTile(directory.entries, tileId);
-			if (entry == null) {
+			int entry = directory.find(tileId);
+			if (entry < 0) {
 				return null;
 			}
-			if (entry.runLength == 0) {
-				long dirOffset = header.leafDirectoryOffset + entry.offset;
-				long dirLength = entry.length;
+			if (directory.runLengths[entry] == 0) {
+				long dirOffset = header.leafDirectoryOffset + directory.offsets[entry];
+				long dirLength = directory.lengths[entry];
 				directory = getDirectory(dirOffset, dirLength);
 				continue;
 			}
-			long dataOffset = header.tileDataOffset + entry.offset;
-			if (entry.length > Integer.MAX_VALUE) {
-				throw new IOException("Tile too large");
-			}
-			return readBytes(dataOffset, (int) entry.length);
+			return directory;
 		}
 		return null;
 	}
 
+	private static int tileLength(Directory directory, int entry) throws IOException {
+		long length = directory.lengths[entry];
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Tile too large");
+		}
+		return (int) length;
+	}
+
 	private Directory getRootDirectory() throws IOException {
 		if (this.rootDirectory == null) {
 			PmTilesHeader header = header();
@@ -83,8 +196,15 @@ final class PmTilesReader {
 	}
 
 	private Directory getDirectory(long offset, long length) throws IOException {
+		int slot = (int) ((offset * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - RECENT_DIRECTORY_BITS));
+		Directory recent = this.recentDirectories.get(slot);
+		if (recent != null && recent.offset == offset && recent.length == length) {
+			return recent;
+		}
 		try {
-			return this.directoryCache.get(new DirectoryKey(offset, length));
+			Directory directory = this.directoryCache.get(new DirectoryKey(offset, length));
+			this.recentDirectories.set(slot, directory);
+			return directory;
 		} catch (Exception e) {
 			if (e.getCause() instanceof IOException io) {
 				throw io;
@@ -94,7 +214,49 @@ final class PmTilesReader {
 	}
 
 	private PmTilesHeader readHeader() throws IOException {
-		byte[] headerBytes = readBytes(0, HEADER_SIZE);
+		byte[] headerBytes = null;
+		PmTilesDiskCache diskCache = this.diskCache;
+		if (diskCache != null) {
+			String stored = diskCache.storedIdentity();
+			if (stored != null && !REVALIDATE) {
+				diskCache.bind(stored);
+				this.source.expectIdentity(stored);
+				headerBytes = diskCache.readRange(0, HEADER_SIZE);
+			}
+		}
+		if (headerBytes == null) {
+			headerBytes = fetchHeaderBytes();
+		}
+		return parseHeader(headerBytes);
+	}
+
+	private synchronized void reloadArchive(String identity) throws IOException {
+		if (identity.equals(this.source.identity())) {
+			return;
+		}
+		Tellus.LOGGER.info("Land mask archive {} changed to {}, reloading", this.source.location(), identity);
+		this.header = null;
+		this.rootDirectory = null;
+		this.directoryCache.invalidateAll();
+		for (int i = 0; i < this.recentDirectories.length(); i++) {
+			this.recentDirectories.set(i, null);
+		}
+		this.header = parseHeader(fetchHeaderBytes());
+	}
+
+	private byte[] fetchHeaderBytes() throws IOException {
+		this.source.expectIdentity(null);
+		byte[] headerBytes = this.source.read(0, HEADER_SIZE);
+		String fetched = this.source.identity();
+		PmTilesDiskCache diskCache = this.diskCache;
+		if (diskCache != null && fetched != null) {
+			diskCache.bind(fetched);
+			diskCache.writeRange(0, headerBytes);
+		}
+		return headerBytes;
+	}
+
+	private static PmTilesHeader parseHeader(byte[] headerBytes) throws IOException {
 		if (!"PMTiles".equals(new String(headerBytes, 0, 7, StandardCharsets.US_ASCII))) {
 			throw new IOException("PMTiles header missing");
 		}
@@ -140,60 +302,55 @@ final class PmTilesReader {
 
 	private Directory readDirectory(long offset, long length) throws IOException {
 		if (length <= 0) {
-			return new Directory(List.of());
+			return new Directory(offset, length, new long[0], new long[0], new long[0], new long[0]);
 		}
-		byte[] compressed = readBytes(offset, (int) length);
+		byte[] compressed = readCachedBytes(offset, (int) length);
 		byte[] decompressed = gunzip(compressed);
 		ByteArrayInputStream input = new ByteArrayInputStream(decompressed);
-		int numEntries = (int) readVarint(input);
-		List<Entry> entries = new ArrayList<>(numEntries);
+		long declared = readVarint(input);
+		if (declared < 0 || declared > decompressed.length) {
+			throw new IOException("Invalid PMTiles directory entry count " + declared);
+		}
+		int numEntries = (int) declared;
+		long[] tileIds = new long[numEntries];
+		long[] offsets = new long[numEntries];
+		long[] lengths = new long[numEntries];
+		long[] runLengths = new long[numEntries];
 		long lastId = 0;
 		for (int i = 0; i < numEntries; i++) {
-			long delta = readVarint(input);
-			long tileId = lastId + delta;
-			entries.add(new Entry(tileId, 0, 0, 0));
-			lastId = tileId;
+			lastId += readVarint(input);
+			tileIds[i] = lastId;
 		}
 		for (int i = 0; i < numEntries; i++) {
-			entries.get(i).runLength = readVarint(input);
+			runLengths[i] = readVarint(input);
 		}
 		for (int i = 0; i < numEntries; i++) {
-			entries.get(i).length = readVarint(input);
+			lengths[i] = readVarint(input);
 		}
 		for (int i = 0; i < numEntries; i++) {
 			long tmp = readVarint(input);
 			if (i > 0 && tmp == 0) {
-				Entry prev = entries.get(i - 1);
-				entries.get(i).offset = prev.offset + prev.length;
+				offsets[i] = offsets[i - 1] + lengths[i - 1];
 			} else {
-				entries.get(i).offset = tmp - 1;
+				offsets[i] = tmp - 1;
 			}
 		}
-		return new Directory(entries);
+		return new Directory(offset, length, tileIds, offsets, lengths, runLengths);
 	}
 
-	private byte[] readBytes(long offset, int length) throws IOException {
-		if (length <= 0) {
-			return new byte[0];
-		}
-		HttpURLConnection connection = (HttpURLConnection) URI.create(this.url).toURL().openConnection();
-		connection.setRequestProperty("Range", "bytes=" + offset + "-" + (offset + length - 1));
-		connection.setInstanceFollowRedirects(true);
-		connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
-		connection.setReadTimeout(READ_TIMEOUT_MS);
-		int code = connection.getResponseCode();
-		try (InputStream input = connection.getInputStream()) {
-			if (code == HttpURLConnection.HTTP_OK) {
-				skipFully(input, offset);
-				return readFully(input, length);
-			}
-			if (code != HttpURLConnection.HTTP_PARTIAL) {
-				throw new IOException("PMTiles HTTP error " + code);
+	private byte[] readCachedBytes(long offset, int length) throws IOException {
+		PmTilesDiskCache diskCache = this.diskCache;
+		if (diskCache != null) {
+			byte[] cached = diskCache.readRange(offset, length);
+			if (cached != null) {
+				return cached;
 			}
-			return readFully(input, length);
-		} finally {
-			connection.disconnect();
 		}
+		byte[] bytes = this.source.read(offset, length);
+		if (diskCache != null) {
+			diskCache.writeRange(offset, bytes);
+		}
+		return bytes;
 	}
 
 	private static byte[] gunzip(byte[] input) throws IOException {
@@ -208,34 +365,6 @@ final class PmTilesReader {
 		}
 	}
 
-	private static void skipFully(InputStream input, long bytes) throws IOException {
-		long remaining = bytes;
-		while (remaining > 0) {
-			long skipped = input.skip(remaining);
-			if (skipped <= 0) {
-				if (input.read() == -1) {
-					throw new EOFException("Unexpected EOF while skipping");
-				}
-				remaining--;
-			} else {
-				remaining -= skipped;
-			}
-		}
-	}
-
-	private static byte[] readFully(InputStream input, int length) throws IOException {
-		byte[] buffer = new byte[length];
-		int offset = 0;
-		while (offset < length) {
-			int read = input.read(buffer, offset, length - offset);
-			if (read == -1) {
-				throw new EOFException("Unexpected EOF while reading");
-			}
-			offset += read;
-		}
-		return buffer;
-	}
-
 	private static long readVarint(InputStream input) throws IOException {
 		long result = 0;
 		int shift = 0;
@@ -264,66 +393,6 @@ final class PmTilesReader {
 				| (((long) buffer[pos + 7] & 0xFF) << 56);
 	}
 
-	private static long zxyToTileId(int z, int x, int y) {
-		if (z > 31) {
-			throw new IllegalArgumentException("Tile zoom exceeds 64-bit limit");
-		}
-		int max = (1 << z) - 1;
-		if (x < 0 || y < 0 || x > max || y > max) {
-			throw new IllegalArgumentException("Tile x/y outside zoom bounds");
-		}
-		long acc = ((1L << (z * 2)) - 1) / 3;
-		for (int a = z - 1; a >= 0; a--) {
-			int s = 1 << a;
-			int rx = (s & x);
-			int ry = (s & y);
-			acc += ((long) ((3 * rx) ^ ry)) << a;
-			int[] rotated = rotate(s, x, y, rx, ry);
-			x = rotated[0];
-			y = rotated[1];
-		}
-		return acc;
-	}
-
-	private static int[] rotate(int n, int x, int y, int rx, int ry) {
-		if (ry == 0) {
-			if (rx != 0) {
-				x = n - 1 - x;
-				y = n - 1 - y;
-			}
-			int t = x;
-			x = y;
-			y = t;
-		}
-		return new int[] { x, y };
-	}
-
-	private static Entry findTile(List<Entry> entries, long tileId) {
-		int m = 0;
-		int n = entries.size() - 1;
-		while (m <= n) {
-			int k = (n + m) >> 1;
-			long diff = tileId - entries.get(k).tileId;
-			if (diff > 0) {
-				m = k + 1;
-			} else if (diff < 0) {
-				n = k - 1;
-			} else {
-				return entries.get(k);
-			}
-		}
-		if (n >= 0) {
-			Entry entry = entries.get(n);
-			if (entry.runLength == 0) {
-				return entry;
-			}
-			if (tileId - entry.tileId < entry.runLength) {
-				return entry;
-			}
-		}
-		return null;
-	}
-
 	private static int intProperty(String key, int defaultValue) {
 		String value = System.getProperty(key);
 		if (value == null) {
@@ -339,25 +408,42 @@ final class PmTilesReader {
 	private record DirectoryKey(long offset, long length) {
 	}
 
-	private static final class Entry {
-		private final long tileId;
-		private long offset;
-		private long length;
-		private long runLength;
-
-		private Entry(long tileId, long offset, long length, long runLength) {
-			this.tileId = tileId;
+	private static final class Directory {
+		private final long offset;
+		private final long length;
+		private final long[] tileIds;
+		private final long[] offsets;
+		private final long[] lengths;
+		private final long[] runLengths;
+
+		private Directory(long offset, long length, long[] tileIds, long[] offsets, long[] lengths, long[] runLengths) {
 			this.offset = offset;
 			this.length = length;
-			this.runLength = runLength;
-		}
-	}
-
-	private static final class Directory {
-		private final List<Entry> entries;
-
-		private Directory(List<Entry> entries) {
-			this.entries = entries;
+			this.tileIds = tileIds;
+			this.offsets = offsets;
+			this.lengths = lengths;
+			this.runLengths = runLengths;
+		}
+
+		private int find(long tileId) {
+			long[] tileIds = this.tileIds;
+			int m = 0;
+			int n = tileIds.length - 1;
+			while (m <= n) {
+				int k = (n + m) >>> 1;
+				long diff = tileId - tileIds[k];
+				if (diff > 0) {
+					m = k + 1;
+				} else if (diff < 0) {
+					n = k - 1;
+				} else {
+					return k;
+				}
+			}
+			if (n >= 0 && (this.runLengths[n] == 0 || tileId - tileIds[n] < this.runLengths[n])) {
+				return n;
+			}
+			return -1;
 		}
 	}
 
@@ -0,0 +1,274 @@
+package com.yucareux.tellus.world.data.mask;
+
+import com.yucareux.tellus.Tellus;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jspecify.annotations.Nullable;
+
+interface PmTilesSource {
+	byte[] read(long offset, int length) throws IOException;
+
+	String location();
+
+	boolean isRemote();
+
+	@Nullable String identity();
+
+	void expectIdentity(@Nullable String identity);
+
+	void close() throws IOException;
+
+	static PmTilesSource open(String location) throws IOException {
+		Objects.requireNonNull(location, "location");
+		Path path;
+		try {
+			if (location.startsWith("http://") || location.startsWith("https://")) {
+				return new Http(location);
+			}
+			path = location.startsWith("file:") ? Path.of(URI.create(location)) : Path.of(location);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid PMTiles location " + location, e);
+		}
+		return Mapped.open(path);
+	}
+
+	final class Http implements PmTilesSource {
+		private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+		private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(15);
+		private static final String USER_AGENT = "Tellus/1.0 (Minecraft Mod)";
+		private static final long BACKOFF_BASE_MS = 500;
+		private static final long BACKOFF_MAX_MS = 60000;
+		private static final HttpClient CLIENT = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.connectTimeout(CONNECT_TIMEOUT)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.build();
+
+		private final URI uri;
+		private final AtomicInteger failures = new AtomicInteger();
+		private volatile long backoffUntil;
+		private volatile @Nullable String identity;
+
+		private Http(String url) {
+			this.uri = URI.create(url);
+		}
+
+		@Override
+		public byte[] read(long offset, int length) throws IOException {
+			if (length <= 0) {
+				return new byte[0];
+			}
+			long now = System.currentTimeMillis();
+			if (now < this.backoffUntil) {
+				throw new IOException("PMTiles requests backing off for " + (this.backoffUntil - now) + " ms");
+			}
+			try {
+				byte[] bytes = fetch(offset, length);
+				this.failures.set(0);
+				return bytes;
+			} catch (ArchiveChangedException e) {
+				this.failures.set(0);
+				throw e;
+			} catch (IOException e) {
+				backOff(e);
+				throw e;
+			}
+		}
+
+		@Override
+		public String location() {
+			return this.uri.toString();
+		}
+
+		@Override
+		public boolean isRemote() {
+			return true;
+		}
+
+		@Override
+		public @Nullable String identity() {
+			return this.identity;
+		}
+
+		@Override
+		public void expectIdentity(@Nullable String identity) {
+			this.identity = identity;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		private byte[] fetch(long offset, int length) throws IOException {
+			HttpRequest request = HttpRequest.newBuilder(this.uri)
+					.timeout(REQUEST_TIMEOUT)
+					.header("User-Agent", USER_AGENT)
+					.header("Range", "bytes=" + offset + "-" + (offset + length - 1))
+					.GET()
+					.build();
+			HttpResponse<InputStream> response;
+			try {
+				response = CLIENT.send(request, HttpResponse.BodyHandlers.ofInputStream());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while reading PMTiles range");
+			}
+			try (InputStream input = response.body()) {
+				if (response.statusCode() != 206) {
+					throw new IOException("PMTiles HTTP error " + response.statusCode() + " for range at " + offset);
+				}
+				checkIdentity(archiveIdentity(response.headers()));
+				String range = response.headers().firstValue("Content-Range").orElse(null);
+				if (range != null && !range.startsWith("bytes " + offset + "-")) {
+					throw new IOException("PMTiles range mismatch: requested " + offset + ", got " + range);
+				}
+				byte[] bytes = input.readNBytes(length);
+				if (bytes.length != length) {
+					throw new EOFException("Unexpected EOF while reading PMTiles range");
+				}
+				return bytes;
+			}
+		}
+
+		private void backOff(IOException error) {
+			int failures = this.failures.incrementAndGet();
+			long delay = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(failures - 1, 16));
+			this.backoffUntil = System.currentTimeMillis() + delay;
+			if (failures == 1) {
+				Tellus.LOGGER.warn("PMTiles request to {} failed, backing off: {}", this.uri, error.getMessage());
+			}
+		}
+
+		private void checkIdentity(@Nullable String fetched) throws IOException {
+			if (fetched == null) {
+				return;
+			}
+			String expected = this.identity;
+			if (expected == null) {
+				this.identity = fetched;
+			} else if (!expected.equals(fetched)) {
+				throw new ArchiveChangedException(expected, fetched);
+			}
+		}
+
+		private static @Nullable String archiveIdentity(HttpHeaders headers) {
+			String etag = headers.firstValue("ETag").orElse(null);
+			if (etag != null && !etag.isBlank()) {
+				return etag.trim();
+			}
+			String range = headers.firstValue("Content-Range").orElse(null);
+			if (range != null) {
+				int slash = range.lastIndexOf('/');
+				if (slash >= 0 && slash < range.length() - 1 && range.charAt(slash + 1) != '*') {
+					return "size-" + range.substring(slash + 1).trim();
+				}
+			}
+			return null;
+		}
+	}
+
+	final class ArchiveChangedException extends IOException {
+		private final String identity;
+
+		ArchiveChangedException(String expected, String identity) {
+			super("PMTiles archive changed from " + expected + " to " + identity);
+			this.identity = identity;
+		}
+
+		String identity() {
+			return this.identity;
+		}
+	}
+
+	final class Mapped implements PmTilesSource {
+		private static final long SEGMENT_BYTES = 1L << 30;
+
+		private final Path path;
+		private final FileChannel channel;
+		private final MappedByteBuffer[] segments;
+		private final long size;
+
+		private Mapped(Path path, FileChannel channel, MappedByteBuffer[] segments, long size) {
+			this.path = path;
+			this.channel = channel;
+			this.segments = segments;
+			this.size = size;
+		}
+
+		static Mapped open(Path path) throws IOException {
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+			try {
+				long size = channel.size();
+				MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_BYTES - 1) / SEGMENT_BYTES)];
+				for (int i = 0; i < segments.length; i++) {
+					long start = i * SEGMENT_BYTES;
+					segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_BYTES, size - start));
+				}
+				return new Mapped(path, channel, segments, size);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		@Override
+		public byte[] read(long offset, int length) throws IOException {
+			if (length <= 0) {
+				return new byte[0];
+			}
+			if (offset < 0 || offset + length > this.size) {
+				throw new EOFException("PMTiles range outside " + this.path);
+			}
+			byte[] buffer = new byte[length];
+			int written = 0;
+			long position = offset;
+			while (written < length) {
+				MappedByteBuffer segment = this.segments[(int) (position / SEGMENT_BYTES)];
+				int start = (int) (position % SEGMENT_BYTES);
+				int count = Math.min(length - written, segment.capacity() - start);
+				segment.get(start, buffer, written, count);
+				written += count;
+				position += count;
+			}
+			return buffer;
+		}
+
+		@Override
+		public String location() {
+			return this.path.toString();
+		}
+
+		@Override
+		public boolean isRemote() {
+			return false;
+		}
+
+		@Override
+		public @Nullable String identity() {
+			return null;
+		}
+
+		@Override
+		public void expectIdentity(@Nullable String identity) {
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+		}
+	}
+}
@@ -7,8 +7,10 @@ import com.yucareux.tellus.Tellus;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Objects;
 import javax.imageio.ImageIO;
+import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.util.Mth;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
@@ -23,33 +25,43 @@ public final class TellusLandMaskSource {
 	private static final String DEFAULT_BASE_URL =
 			"https://github.com/Yucareux/Tellus-Land-Polygons/releases/download/v1.0.0/";
 	private static final String PMTILES_NAME = "tellus_landmask.pmtiles";
-	private static final int MAX_CACHE_TILES = intProperty("tellus.landmask.cacheTiles", 256);
+	private static final long MAX_CACHE_BYTES = intProperty("tellus.landmask.cacheMegabytes", 16) * 1024L * 1024L;
+	private static final int TILE_OVERHEAD_BYTES = 64;
+	private static final boolean DISK_CACHE = Boolean.parseBoolean(System.getProperty("tellus.landmask.diskCache", "true"));
 
-	private final PmTilesReader reader;
+	private final @Nullable PmTilesReader reader;
 	private final LoadingCache<TileKey, @Nullable LandMaskTile> cache;
 	private final int minZoom;
 	private final int maxZoom;
 	private final boolean available;
 
 	public TellusLandMaskSource() {
-		String baseUrl = System.getProperty("tellus.landmask.baseUrl", DEFAULT_BASE_URL);
-		this.reader = new PmTilesReader(normalizeBaseUrl(baseUrl) + PMTILES_NAME);
+		String location = System.getProperty("tellus.landmask.path");
+		if (location == null || location.isBlank()) {
+			String baseUrl = System.getProperty("tellus.landmask.baseUrl", DEFAULT_BASE_URL);
+			location = normalizeBaseUrl(baseUrl) + PMTILES_NAME;
+		}
+		Path cacheRoot = DISK_CACHE ? FabricLoader.getInstance().getGameDir().resolve("tellus/cache/landmask") : null;
+		PmTilesReader resolvedReader = null;
 		int resolvedMin = 0;
 		int resolvedMax = 0;
 		boolean ok = false;
 		try {
-			PmTilesReader.PmTilesHeader header = this.reader.header();
+			resolvedReader = new PmTilesReader(PmTilesSource.open(location), cacheRoot);
+			PmTilesReader.PmTilesHeader header = resolvedReader.header();
 			resolvedMin = header.minZoom();
 			resolvedMax = header.maxZoom();
 			ok = true;
 		} catch (IOException e) {
 			Tellus.LOGGER.warn("Land mask PMTiles unavailable, falling back to ESA only", e);
 		}
+		this.reader = resolvedReader;
 		this.available = ok;
 		this.minZoom = ok ? resolvedMin : 0;
 		this.maxZoom = ok ? resolvedMax : 0;
 		this.cache = CacheBuilder.newBuilder()
-				.maximumSize(MAX_CACHE_TILES)
+				.maximumWeight(MAX_CACHE_BYTES)
+				.weigher((TileKey key, @Nullable LandMaskTile tile) -> tile != null ? tile.weight() : TILE_OVERHEAD_BYTES)
 				.build(new CacheLoader<>() {
 					@Override
 					public @Nullable LandMaskTile load(TileKey key) throws Exception {
@@ -80,8 +92,8 @@ public final class TellusLandMaskSource {
 			return LandMaskSample.unknown();
 		}
 
-		if (tile.isEmpty()) {
-			return LandMaskSample.known(false);
+		if (tile.isUniform()) {
+			return LandMaskSample.known(tile.isLand(0, 0));
 		}
 
 		double latRad = Math.toRadians(lat);
@@ -111,9 +123,36 @@ public final class TellusLandMaskSource {
 		int maxX = Math.min(tilesPerAxis - 1, center.x() + radius);
 		int minY = Math.max(0, center.y() - radius);
 		int maxY = Math.min(tilesPerAxis - 1, center.y() + radius);
+		int capacity = (maxX - minX + 1) * (maxY - minY + 1);
+		int[] xs = new int[capacity];
+		int[] ys = new int[capacity];
+		int count = 0;
 		for (int tileY = minY; tileY <= maxY; tileY++) {
 			for (int tileX = minX; tileX <= maxX; tileX++) {
-				getTile(new TileKey(zoom, tileX, tileY));
+				if (this.cache.getIfPresent(new TileKey(zoom, tileX, tileY)) == null) {
+					xs[count] = tileX;
+					ys[count] = tileY;
+					count++;
+				}
+			}
+		}
+		PmTilesReader reader = this.reader;
+		if (count == 0 || reader == null) {
+			return;
+		}
+		byte[][] payloads;
+		try {
+			payloads = reader.getTileBytes(zoom, xs, ys, count);
+		} catch (IOException e) {
+			Tellus.LOGGER.debug("Failed to prefetch land mask tiles around {}/{}/{}", zoom, center.x(), center.y(), e);
+			return;
+		}
+		for (int i = 0; i < count; i++) {
+			TileKey key = new TileKey(zoom, xs[i], ys[i]);
+			try {
+				this.cache.put(key, decodeTile(payloads[i]));
+			} catch (IOException e) {
+				Tellus.LOGGER.debug("Failed to decode land mask tile {}", key, e);
 			}
 		}
 	}
@@ -129,25 +168,51 @@ public final class TellusLandMaskSource {
 
 	private LandMaskTile loadTile(TileKey key) throws IOException {
 		TileKey resolvedKey = Objects.requireNonNull(key, "key");
-		byte[] bytes = this.reader.getTileBytes(resolvedKey.zoom(), resolvedKey.x(), resolvedKey.y());
+		PmTilesReader reader = this.reader;
+		if (reader == null) {
+			throw new IOException("Land mask PMTiles unavailable");
+		}
+		return decodeTile(reader.getTileBytes(resolvedKey.zoom(), resolvedKey.x(), resolvedKey.y()));
+	}
+
+	private static LandMaskTile decodeTile(byte @Nullable [] bytes) throws IOException {
 		if (bytes == null) {
-			return LandMaskTile.empty();
+			return LandMaskTile.ALL_WATER;
+		}
+		LandMaskPng.Mask mask = LandMaskPng.decode(bytes);
+		if (mask == null) {
+			mask = decodeWithImageIo(bytes);
+		}
+		int pixels = mask.width() * mask.height();
+		if (mask.landCount() == 0) {
+			return LandMaskTile.ALL_WATER;
 		}
+		if (mask.landCount() == pixels) {
+			return LandMaskTile.ALL_LAND;
+		}
+		return new LandMaskTile(mask.width(), mask.height(), mask.bits());
+	}
+
+	private static LandMaskPng.Mask decodeWithImageIo(byte[] bytes) throws IOException {
 		BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
 		if (image == null) {
 			throw new IOException("Invalid land mask tile image");
 		}
 		int width = image.getWidth();
 		int height = image.getHeight();
-		byte[] mask = new byte[width * height];
+		long[] bits = new long[(width * height + 63) >>> 6];
+		int landCount = 0;
 		for (int y = 0; y < height; y++) {
 			int row = y * width;
 			for (int x = 0; x < width; x++) {
-				int value = image.getRaster().getSample(x, y, 0);
-				mask[row + x] = (byte) (value > 0 ? 1 : 0);
+				if (image.getRaster().getSample(x, y, 0) > 0) {
+					int index = row + x;
+					bits[index >>> 6] |= 1L << index;
+					landCount++;
+				}
 			}
 		}
-		return new LandMaskTile(width, height, mask, false);
+		return new LandMaskPng.Mask(width, height, bits, landCount);
 	}
 
 	private int selectZoom(double worldScale) {
@@ -217,26 +282,21 @@ public final class TellusLandMaskSource {
 	}
 
 	private static final class LandMaskTile {
-		private static final LandMaskTile EMPTY = new LandMaskTile(0, 0, new byte[0], true);
+		private static final LandMaskTile ALL_WATER = new LandMaskTile(TILE_SIZE, TILE_SIZE, null);
+		private static final LandMaskTile ALL_LAND = new LandMaskTile(TILE_SIZE, TILE_SIZE, null);
 
 		private final int width;
 		private final int height;
-		private final byte[] mask;
-		private final boolean empty;
+		private final long @Nullable [] bits;
 
-		private LandMaskTile(int width, int height, byte[] mask, boolean empty) {
+		private LandMaskTile(int width, int height, long @Nullable [] bits) {
 			this.width = width;
 			this.height = height;
-			this.mask = mask;
-			this.empty = empty;
+			this.bits = bits;
 		}
 
-		public static LandMaskTile empty() {
-			return EMPTY;
-		}
-
-		public boolean isEmpty() {
-			return this.empty;
+		public boolean isUniform() {
+			return this.bits == null;
 		}
 
 		public int width() {
@@ -247,15 +307,20 @@ public final class TellusLandMaskSource {
 			return this.height;
 		}
 
+		public int weight() {
+			return TILE_OVERHEAD_BYTES + (this.bits != null ? this.bits.length * Long.BYTES : 0);
+		}
+
 		public boolean isLand(int x, int y) {
-			if (this.empty || this.mask.length == 0) {
-				return false;
+			long[] bits = this.bits;
+			if (bits == null) {
+				return this == ALL_LAND;
 			}
 			int index = y * this.width + x;
-			if (index < 0 || index >= this.mask.length) {
+			if (index < 0 || index >= this.width * this.height) {
 				return false;
 			}
-			return this.mask[index] != 0;
+			return (bits[index >>> 6] & (1L << index)) != 0;
 		}
 	}
 }
@@ -83,9 +83,16 @@ public final class EarthBiomeSource extends BiomeSource {
 		return resolveBiomeAtBlock(blockX, blockZ);
 	}
 
+	public @NonNull Holder<Biome> getBiomeAtBlock(int blockX, int blockZ, int coverClass) {
+		return resolveBiomeAtBlock(blockX, blockZ, coverClass);
+	}
+
 	private @NonNull Holder<Biome> resolveBiomeAtBlock(int blockX, int blockZ) {
 		int coverClass = LAND_COVER_SOURCE.sampleCoverClass(blockX, blockZ, this.settings.worldScale());
+		return resolveBiomeAtBlock(blockX, blockZ, coverClass);
+	}
 
+	private @NonNull Holder<Biome> resolveBiomeAtBlock(int blockX, int blockZ, int coverClass) {
 		if (coverClass == ESA_SNOW_ICE) {
 			return this.frozenPeaks;
 		}
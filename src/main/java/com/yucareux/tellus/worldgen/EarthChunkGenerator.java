@@ -311,7 +311,10 @@ public final class EarthChunkGenerator extends ChunkGenerator {
 
 		int step = SLOPE_SAMPLE_STEP;
 		int gridSize = 16 + step * 2;
-		int[] heightGrid = new int[gridSize * gridSize];
+		int gridArea = gridSize * gridSize;
+		int[] heightGrid = new int[gridArea];
+		boolean[] oceanZoomGrid = new boolean[gridArea];
+		double[] elevationGrid = new double[gridArea];
 		int gridMinX = pos.getMinBlockX() - step;
 		int gridMinZ = pos.getMinBlockZ() - step;
 		for (int dz = 0; dz < gridSize; dz++) {
@@ -319,9 +322,22 @@ public final class EarthChunkGenerator extends ChunkGenerator {
 			int row = dz * gridSize;
 			for (int dx = 0; dx < gridSize; dx++) {
 				int worldX = gridMinX + dx;
-				heightGrid[row + dx] = sampleSurfaceHeight(worldX, worldZ);
+				oceanZoomGrid[row + dx] = useOceanZoom(worldX, worldZ);
 			}
 		}
+		ELEVATION_SOURCE.sampleElevationGrid(
+				gridMinX,
+				gridMinZ,
+				gridSize,
+				gridSize,
+				1,
+				this.settings.worldScale(),
+				oceanZoomGrid,
+				elevationGrid
+		);
+		for (int i = 0; i < gridArea; i++) {
+			heightGrid[i] = elevationToSurfaceHeight(elevationGrid[i]);
+		}
 
 		int[] coverClasses = new int[16 * 16];
 		int[] terrainSurfaces = new int[16 * 16];
@@ -330,6 +346,8 @@ public final class EarthChunkGenerator extends ChunkGenerator {
 
 		int chunkMinX = pos.getMinBlockX();
 		int chunkMinZ = pos.getMinBlockZ();
+		byte[] coverGrid = new byte[16 * 16];
+		LAND_COVER_SOURCE.sampleCoverGrid(chunkMinX, chunkMinZ, 16, 16, 1, this.settings.worldScale(), coverGrid);
 		int bedrockY = this.minY;
 		boolean bedrockInChunk = bedrockY >= chunkMinY && bedrockY < chunkMaxY;
 		for (int localX = 0; localX < 16; localX++) {
@@ -337,7 +355,7 @@ public final class EarthChunkGenerator extends ChunkGenerator {
 				for (int localZ = 0; localZ < 16; localZ++) {
 					int worldZ = chunkMinZ + localZ;
 					int index = localZ * 16 + localX;
-				int coverClass = LAND_COVER_SOURCE.sampleCoverClass(worldX, worldZ, this.settings.worldScale());
+				int coverClass = Byte.toUnsignedInt(coverGrid[index]);
 				int gridIndex = (localZ + step) * gridSize + (localX + step);
 				int cachedSurface = heightGrid[gridIndex];
 				ColumnHeights column = resolveColumnHeights(
@@ -673,11 +691,14 @@ public final class EarthChunkGenerator extends ChunkGenerator {
 	}
 
 	private boolean isNearWater(int worldX, int worldZ, int radius) {
+		int size = radius * 2 + 1;
+		byte[] coverGrid = new byte[size * size];
+		LAND_COVER_SOURCE.sampleCoverGrid(worldX - radius, worldZ - radius, size, size, 1, this.settings.worldScale(), coverGrid);
 		for (int dz = -radius; dz <= radius; dz++) {
 			int z = worldZ + dz;
 			for (int dx = -radius; dx <= radius; dx++) {
 				int x = worldX + dx;
-				int coverClass = LAND_COVER_SOURCE.sampleCoverClass(x, z, this.settings.worldScale());
+				int coverClass = Byte.toUnsignedInt(coverGrid[(dz + radius) * size + dx + radius]);
 				WaterSurfaceResolver.WaterInfo info = this.waterResolver.resolveWaterInfo(x, z, coverClass);
 				if (info.isWater()) {
 					return true;
@@ -690,6 +711,24 @@ public final class EarthChunkGenerator extends ChunkGenerator {
 	private int sampleSurfaceHeight(int blockX, int blockZ) {
 		boolean oceanZoom = useOceanZoom(blockX, blockZ);
 		double elevation = ELEVATION_SOURCE.sampleElevationMeters(blockX, blockZ, this.settings.worldScale(), oceanZoom);
+		return elevationToSurfaceHeight(elevation);
+	}
+
+	private int samplePeakSurfaceHeight(int blockX, int blockZ, int cellBlocks) {
+		if (cellBlocks <= 1) {
+			return Integer.MIN_VALUE;
+		}
+		double peak = ELEVATION_SOURCE.sampleReducedElevationMeters(
+				blockX,
+				blockZ,
+				this.settings.worldScale(),
+				cellBlocks,
+				TellusElevationSource.Reduction.MAX
+		);
+		return Double.isNaN(peak) ? Integer.MIN_VALUE : elevationToSurfaceHeight(peak);
+	}
+
+	private int elevationToSurfaceHeight(double elevation) {
 		double heightScale = elevation >= 0.0 ? this.settings.terrestrialHeightScale() : this.settings.oceanicHeightScale();
 		double scaled = elevation * heightScale / this.settings.worldScale();
 		int offset = this.settings.heightOffset();
@@ -711,17 +750,12 @@ public final class EarthChunkGenerator extends ChunkGenerator {
 	}
 
 	private int sampleSlopeDiff(int worldX, int worldZ, int surface) {
-		int step = SLOPE_SAMPLE_STEP;
-		int east = sampleSurfaceHeight(worldX + step, worldZ);
-		int west = sampleSurfaceHeight(worldX - step, worldZ);
-		int north = sampleSurfaceHeight(worldX, worldZ - step);
-		int south = sampleSurfaceHeight(worldX, worldZ + step);
-
-		int maxDiff = Math.max(
-				Math.max(Math.abs(east - surface), Math.abs(west - surface)),
-				Math.max(Math.abs(north - surface), Math.abs(south - surface))
-		);
-		return maxDiff;
+		boolean oceanZoom = useOceanZoom(worldX, worldZ);
+		double gradient = ELEVATION_SOURCE.sampleGradient(worldX, worldZ, this.settings.worldScale(), oceanZoom);
+		double heightScale = surface >= this.settings.heightOffset()
+				? this.settings.terrestrialHeightScale()
+				: this.settings.oceanicHeightScale();
+		return (int) Math.round(gradient * heightScale * SLOPE_SAMPLE_STEP);
 	}
 
 	private ColumnHeights resolveColumnHeights(
@@ -879,11 +913,17 @@ public final class EarthChunkGenerator extends ChunkGenerator {
 			boolean underwater,
 			int coverClass
 	) {
-		SurfacePalette palette = selectSurfacePalette(biome, worldX, worldZ, surface, underwater, coverClass);
+		SurfacePalette palette = selectBaseSurfacePalette(biome, worldX, worldZ);
 		if (palette == null) {
 			BlockState stone = Blocks.STONE.defaultBlockState();
 			return new LodSurface(stone, stone);
 		}
+		if (!underwater
+				&& isSoilPalette(palette)
+				&& coverClass != ESA_TREE_COVER
+				&& sampleSlopeDiff(worldX, worldZ, surface) >= STONY_SLOPE_DIFF) {
+			palette = SurfacePalette.stonyPeaks();
+		}
 		BlockState top = underwater ? palette.underwaterTop() : palette.top();
 		return new LodSurface(top, palette.filler());
 	}
@@ -906,12 +946,25 @@ public final class EarthChunkGenerator extends ChunkGenerator {
 		return LAND_COVER_SOURCE.sampleCoverClass(worldX, worldZ, this.settings.worldScale());
 	}
 
+	public void sampleCoverGrid(int minX, int minZ, int width, int height, int step, byte[] out) {
+		LAND_COVER_SOURCE.sampleCoverGrid(minX, minZ, width, height, step, this.settings.worldScale(), out);
+	}
+
 	public WaterSurfaceResolver.WaterColumnData resolveLodWaterColumn(int worldX, int worldZ) {
 		int coverClass = sampleCoverClass(worldX, worldZ);
 		return resolveLodWaterColumn(worldX, worldZ, coverClass);
 	}
 
 	public WaterSurfaceResolver.WaterColumnData resolveLodWaterColumn(int worldX, int worldZ, int coverClass) {
+		return resolveLodWaterColumn(worldX, worldZ, coverClass, 1);
+	}
+
+	public WaterSurfaceResolver.WaterColumnData resolveLodWaterColumn(
+			int worldX,
+			int worldZ,
+			int coverClass,
+			int cellBlocks
+	) {
 		// LODs use a lightweight water approximation to avoid the full resolver cost.
 		int surface = sampleSurfaceHeight(worldX, worldZ);
 		boolean noData = coverClass == ESA_NO_DATA;
@@ -919,6 +972,7 @@ public final class EarthChunkGenerator extends ChunkGenerator {
 				|| coverClass == ESA_MANGROVES
 				|| (noData && surface <= this.seaLevel);
 		if (!hasWater) {
+			surface = Math.max(surface, samplePeakSurfaceHeight(worldX, worldZ, cellBlocks));
 			return new WaterSurfaceResolver.WaterColumnData(false, false, surface, surface);
 		}
 		int waterSurface = Math.max(surface + 1, this.seaLevel);
@@ -957,6 +1011,10 @@ public final class EarthChunkGenerator extends ChunkGenerator {
 		return this.waterResolver.resolveColumnData(worldX, worldZ, coverClass);
 	}
 
+	public void prefetchLodCoverTiles(int minBlockX, int minBlockZ, int maxBlockX, int maxBlockZ) {
+		LAND_COVER_SOURCE.decodeTiles(minBlockX, minBlockZ, maxBlockX, maxBlockZ, this.settings.worldScale());
+	}
+
 	public void prefetchLodWaterRegions(int minBlockX, int minBlockZ, int maxBlockX, int maxBlockZ) {
 		this.waterResolver.prefetchRegionsForArea(minBlockX, minBlockZ, maxBlockX, maxBlockZ);
 	}
@@ -966,28 +1024,6 @@ public final class EarthChunkGenerator extends ChunkGenerator {
 		return badlandsBand(y, offset);
 	}
 
-	private SurfacePalette selectSurfacePalette(
-			Holder<Biome> biome,
-			int worldX,
-			int worldZ,
-			int surface,
-			boolean underwater,
-			int coverClass
-	) {
-		SurfacePalette palette = selectBaseSurfacePalette(biome, worldX, worldZ);
-		if (palette == null) {
-			return null;
-		}
-		if (underwater || !isSoilPalette(palette) || coverClass == ESA_TREE_COVER) {
-			return palette;
-		}
-		int slopeDiff = sampleSlopeDiff(worldX, worldZ, surface);
-		if (slopeDiff >= STONY_SLOPE_DIFF) {
-			return SurfacePalette.stonyPeaks();
-		}
-		return palette;
-	}
-
 	private SurfacePalette selectSurfacePalette(
 			Holder<Biome> biome,
 			int worldX,
@@ -265,9 +265,12 @@ public final class WaterSurfaceResolver {
 		int maxX = (chunkX << 4) + 15 + padding;
 		int maxZ = (chunkZ << 4) + 15 + padding;
 		double worldScale = this.settings.worldScale();
+		int size = maxX - minX + 1;
+		byte[] coverGrid = new byte[size * (maxZ - minZ + 1)];
+		this.landCoverSource.sampleCoverGrid(minX, minZ, size, maxZ - minZ + 1, 1, worldScale, coverGrid);
 		for (int z = minZ; z <= maxZ; z++) {
 			for (int x = minX; x <= maxX; x++) {
-				int coverClass = this.landCoverSource.sampleCoverClass(x, z, worldScale);
+				int coverClass = Byte.toUnsignedInt(coverGrid[(z - minZ) * size + x - minX]);
 				if (coverClass == ESA_WATER) {
 					return true;
 				}
@@ -332,17 +335,20 @@ public final class WaterSurfaceResolver {
 		boolean hasWater = false;
 
 		double worldScale = this.settings.worldScale();
+		int[] coverClasses = scratch.coverClasses;
+		byte[] coverGrid = scratch.coverGrid;
+		boolean[] oceanZoomMask = scratch.oceanZoomMask;
+		double[] elevations = scratch.elevations;
+		this.landCoverSource.decodeTiles(gridMinX, gridMinZ, gridMinX + gridSize - 1, gridMinZ + gridSize - 1, worldScale);
+		this.landCoverSource.sampleCoverGrid(gridMinX, gridMinZ, gridSize, gridSize, 1, worldScale, coverGrid);
 		for (int dz = 0; dz < gridSize; dz++) {
 			int worldZ = gridMinZ + dz;
 			int row = dz * gridSize;
-			int coarseZ = dz / coarseStep;
-			int coarseRow = coarseZ * coarseSize;
 			for (int dx = 0; dx < gridSize; dx++) {
 				int worldX = gridMinX + dx;
-				int coverClass = this.landCoverSource.sampleCoverClass(worldX, worldZ, worldScale);
+				int coverClass = Byte.toUnsignedInt(coverGrid[row + dx]);
 				TellusLandMaskSource.LandMaskSample landMaskSample =
 						this.landMaskSource.sampleLandMask(worldX, worldZ, worldScale);
-				int surface = sampleSurfaceHeight(worldX, worldZ, coverClass, landMaskSample);
 				boolean isNoData = coverClass == ESA_NO_DATA;
 				boolean maskKnown = landMaskSample.known();
 				boolean landMaskIsLand = maskKnown && landMaskSample.land();
@@ -352,11 +358,34 @@ public final class WaterSurfaceResolver {
 				} else {
 					oceanMask = isNoData;
 				}
-				boolean isWater = coverClass == ESA_WATER || (oceanMask && surface <= this.seaLevel);
 				int index = row + dx;
-				baseWaterMask[index] = isWater;
+				coverClasses[index] = coverClass;
+				oceanZoomMask[index] = useOceanZoom(landMaskSample, coverClass);
 				noDataMask[index] = oceanMask;
 				landMaskLand[index] = landMaskIsLand;
+			}
+		}
+		this.elevationSource.sampleElevationGrid(
+				gridMinX,
+				gridMinZ,
+				gridSize,
+				gridSize,
+				1,
+				worldScale,
+				oceanZoomMask,
+				elevations
+		);
+
+		for (int dz = 0; dz < gridSize; dz++) {
+			int row = dz * gridSize;
+			int coarseZ = dz / coarseStep;
+			int coarseRow = coarseZ * coarseSize;
+			for (int dx = 0; dx < gridSize; dx++) {
+				int index = row + dx;
+				int surface = elevationToSurfaceHeight(elevations[index]);
+				boolean oceanMask = noDataMask[index];
+				boolean isWater = coverClasses[index] == ESA_WATER || (oceanMask && surface <= this.seaLevel);
+				baseWaterMask[index] = isWater;
 				surfaceHeights[index] = surface;
 				if (isWater) {
 					hasWater = true;
@@ -1348,6 +1377,10 @@ public final class WaterSurfaceResolver {
 
 	private int sampleSurfaceHeight(double blockX, double blockZ, boolean oceanZoom) {
 		double elevation = this.elevationSource.sampleElevationMeters(blockX, blockZ, this.settings.worldScale(), oceanZoom);
+		return elevationToSurfaceHeight(elevation);
+	}
+
+	private int elevationToSurfaceHeight(double elevation) {
 		double heightScale = elevation >= 0.0 ? this.settings.terrestrialHeightScale() : this.settings.oceanicHeightScale();
 		double scaled = elevation * heightScale / this.settings.worldScale();
 		int offset = this.settings.heightOffset();
@@ -1439,6 +1472,10 @@ public final class WaterSurfaceResolver {
 		private boolean[] noDataMask;
 		private boolean[] landMaskLand;
 		private int[] surfaceHeights;
+		private int[] coverClasses;
+		private byte[] coverGrid;
+		private boolean[] oceanZoomMask;
+		private double[] elevations;
 		private int[] componentIds;
 		private ComponentData[] components;
 		private int[] waterSurface;
@@ -1477,6 +1514,10 @@ public final class WaterSurfaceResolver {
 			this.noDataMask = new boolean[size];
 			this.landMaskLand = new boolean[size];
 			this.surfaceHeights = new int[size];
+			this.coverClasses = new int[size];
+			this.coverGrid = new byte[size];
+			this.oceanZoomMask = new boolean[size];
+			this.elevations = new double[size];
 			this.componentIds = new int[size];
 			this.components = new ComponentData[size];
 			this.waterSurface = new int[size];